@@ -0,0 +1,218 @@
+package graphFiles;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+* Customizable route planning overlay: for every cell of a CellPartition, the
+* lowest weight from each boundary vertex to each other one without leaving the
+* cell. Customizing only runs searches inside cells, one cell per task, and a
+* weight change only re-customizes the cells holding the changed edges.
+*
+* A query searches the full graph only in the cells of its two ends. Everywhere
+* else it jumps between boundary vertices, along the precomputed cell cliques
+* and the edges that cross between cells.
+*/
+public final class CellOverlay {
+
+    private final CellPartition partition;
+    private final CompactGraph graph;
+    // clique[c][i * k + j] is the weight from boundary vertex i to j of cell c with k boundary vertices
+    private final double[][] clique;
+
+    private CellOverlay(CellPartition p, CompactGraph g, double[][] clique) {
+        this.partition = p;
+        this.graph = g;
+        this.clique = clique;
+    }
+
+    /**
+    * Customizes every cell for the weights of a graph.
+    * @param p the partition of the graph
+    * @param g the graph, with the weights to customize for
+    * @return the overlay
+    */
+    public static CellOverlay customize(CellPartition p, CompactGraph g) {
+        if (p.vertexCount() != g.vertexCount()) {
+            throw new IllegalArgumentException();
+        }
+        double[][] clique = new double[p.cellCount()][];
+        CellOverlay overlay = new CellOverlay(p, g, clique);
+        IntStream.range(0, p.cellCount()).parallel().forEach(c -> clique[c] = overlay.cellClique(c));
+        return overlay;
+    }
+
+    /**
+    * Customizes for new weights of the same roads, reusing the cliques of every
+    * cell that none of the changed edges lies inside.
+    * @param g the reweighted graph
+    * @param changedEdges the ids of the edges whose weight changed
+    * @return the new overlay, this overlay is left as it was
+    */
+    public CellOverlay customize(CompactGraph g, int[] changedEdges) {
+        if (g.edgeCount() != this.graph.edgeCount()) {
+            throw new IllegalArgumentException();
+        }
+        CellPartition p = this.partition;
+        boolean[] dirty = new boolean[p.cellCount()];
+        for (int e : changedEdges) {
+            //edges between cells are searched directly and are in no clique
+            int c = p.cell(g.source(e));
+            if (c == p.cell(g.target(e))) {
+                dirty[c] = true;
+            }
+        }
+        double[][] clique = this.clique.clone();
+        CellOverlay overlay = new CellOverlay(p, g, clique);
+        IntStream.range(0, p.cellCount()).filter(c -> dirty[c]).parallel()
+                 .forEach(c -> clique[c] = overlay.cellClique(c));
+        return overlay;
+    }
+
+    /**
+    * @return the graph whose weights the overlay was customized for
+    */
+    public CompactGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+    * @return the partition the overlay is built on
+    */
+    public CellPartition getPartition() {
+        return this.partition;
+    }
+
+    //searches from every boundary vertex of the cell to all the others, inside the cell
+    private double[] cellClique(int c) {
+        int k = this.partition.boundarySize(c);
+        double[] weights = new double[k * k];
+        SearchContext ctx = SearchScratch.of(this.graph.vertexCount()).context(SearchScratch.OVERLAY_CELL);
+        for (int i = 0; i < k; i++) {
+            this.searchCell(ctx, c, this.partition.boundary(c, i), -1);
+            for (int j = 0; j < k; j++) {
+                weights[i * k + j] = ctx.dist(this.partition.boundary(c, j));
+            }
+        }
+        return weights;
+    }
+
+    //dijkstra from start over the edges inside cell c, until end is settled if it is not -1
+    private void searchCell(SearchContext ctx, int c, int start, int end) {
+        CompactGraph g = this.graph;
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+        ctx.label(start, 0, -1);
+        heap.push(start, 0);
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            ctx.settle(v);
+            if (v == end) {
+                return;
+            }
+            double currDistance = ctx.dist(v);
+            for (int e = g.outStart(v); e < g.outEnd(v); e++) {
+                int to = g.target(e);
+                if (this.partition.cell(to) != c) {
+                    continue;
+                }
+                double newWeight = currDistance + g.weight(e);
+                if (newWeight < ctx.dist(to) && !ctx.settled(to)) {
+                    ctx.label(to, newWeight, e);
+                    heap.push(to, newWeight);
+                }
+            }
+        }
+    }
+
+    /**
+    * Finds the lowest weight path over the overlay. A vertex reached through a
+    * clique records the negative parent -2 - (i * k + j), the clique entry it
+    * came along, which is unpacked by searching its cell again.
+    * @param start the vertex to route from
+    * @param end the vertex to route to
+    * @return the route, or null if there is none
+    */
+    public Route route(int start, int end) {
+        CompactGraph g = this.graph;
+        CellPartition p = this.partition;
+        int startCell = p.cell(start);
+        int endCell = p.cell(end);
+        SearchContext ctx = SearchScratch.of(this.graph.vertexCount()).context(SearchScratch.OVERLAY_SEARCH);
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+        ctx.label(start, 0, -1);
+        heap.push(start, 0);
+
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            ctx.settle(v);
+            if (v == end) {
+                break;
+            }
+            double currDistance = ctx.dist(v);
+            int c = p.cell(v);
+            boolean detailed = c == startCell || c == endCell;
+            if (!detailed) {
+                //every vertex reached outside the end cells is a boundary vertex
+                int k = p.boundarySize(c);
+                int i = p.boundaryIndex(v);
+                double[] row = this.clique[c];
+                for (int j = 0; j < k; j++) {
+                    int to = p.boundary(c, j);
+                    double newWeight = currDistance + row[i * k + j];
+                    if (j != i && newWeight < ctx.dist(to) && !ctx.settled(to)) {
+                        ctx.label(to, newWeight, -2 - (i * k + j));
+                        heap.push(to, newWeight);
+                    }
+                }
+            }
+            for (int e = g.outStart(v); e < g.outEnd(v); e++) {
+                int to = g.target(e);
+                if (!detailed && p.cell(to) == c) {
+                    continue;
+                }
+                double newWeight = currDistance + g.weight(e);
+                if (newWeight < ctx.dist(to) && !ctx.settled(to)) {
+                    ctx.label(to, newWeight, e);
+                    heap.push(to, newWeight);
+                }
+            }
+        }
+        if (!ctx.settled(end)) {
+            return null;
+        }
+
+        //walks back to the start, expanding clique entries into edges inside their cell
+        SearchContext inner = SearchScratch.of(this.graph.vertexCount()).context(SearchScratch.OVERLAY_CELL);
+        int[] path = new int[64];
+        int size = 0;
+        for (int v = end; v != start; ) {
+            int parent = ctx.parent(v);
+            if (parent >= 0) {
+                if (size == path.length) {
+                    path = Arrays.copyOf(path, size * 2);
+                }
+                path[size++] = parent;
+                v = g.source(parent);
+                continue;
+            }
+            int c = p.cell(v);
+            int from = p.boundary(c, (-2 - parent) / p.boundarySize(c));
+            this.searchCell(inner, c, from, v);
+            for (int u = v; u != from; u = g.source(inner.parent(u))) {
+                if (size == path.length) {
+                    path = Arrays.copyOf(path, size * 2);
+                }
+                path[size++] = inner.parent(u);
+            }
+            v = from;
+        }
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            int t = path[i];
+            path[i] = path[j];
+            path[j] = t;
+        }
+        return new Route(Arrays.copyOf(path, size), ctx.dist(end), ctx.settledCount());
+    }
+}
@@ -0,0 +1,178 @@
+package graphFiles;
+
+/**
+* Splits the vertices of a map into geographic cells and finds the boundary
+* vertices of every cell, the ones with an edge to or from another cell.
+* The partition only depends on where the roads are, not on their weights, so
+* it is built once per map and shared by every CellOverlay customized on it.
+*/
+public final class CellPartition {
+
+    private final int[] cell;
+    // the boundary vertices of cell c are boundary[boundaryOffset[c]] onward
+    private final int[] boundaryOffset;
+    private final int[] boundary;
+    // position of each vertex among the boundary vertices of its cell, -1 if inside
+    private final int[] boundaryIndex;
+    // the vertices grouped by cell, in the order the splits left them
+    private final int[] order;
+    private int cellCount;
+
+    /**
+    * Cuts the map in half along its longer side, again and again, until no
+    * cell holds more than maxCellSize vertices.
+    * @param g the graph to partition
+    * @param maxCellSize the most vertices a cell may hold
+    */
+    public CellPartition(CompactGraph g, int maxCellSize) {
+        int n = g.vertexCount();
+        this.cell = new int[n];
+        this.order = new int[n];
+        for (int v = 0; v < n; v++) {
+            this.order[v] = v;
+        }
+        double latSum = 0;
+        for (int v = 0; v < n; v++) {
+            latSum += g.lat(v);
+        }
+        double cosLat = n == 0 ? 1 : Math.cos(Math.toRadians(latSum / n));
+        this.cellCount = 0;
+        this.split(g, 0, n, Math.max(1, maxCellSize), cosLat);
+
+        //a vertex is on the boundary if any of its edges crosses into another cell
+        this.boundaryIndex = new int[n];
+        this.boundaryOffset = new int[this.cellCount + 1];
+        for (int v = 0; v < n; v++) {
+            this.boundaryIndex[v] = -1;
+            boolean crosses = false;
+            for (int e = g.outStart(v); e < g.outEnd(v) && !crosses; e++) {
+                crosses = this.cell[g.target(e)] != this.cell[v];
+            }
+            for (int slot = g.inStart(v); slot < g.inEnd(v) && !crosses; slot++) {
+                crosses = this.cell[g.source(g.inEdge(slot))] != this.cell[v];
+            }
+            if (crosses) {
+                this.boundaryIndex[v] = this.boundaryOffset[this.cell[v] + 1]++;
+            }
+        }
+        for (int c = 0; c < this.cellCount; c++) {
+            this.boundaryOffset[c + 1] += this.boundaryOffset[c];
+        }
+        this.boundary = new int[this.boundaryOffset[this.cellCount]];
+        for (int v = 0; v < n; v++) {
+            if (this.boundaryIndex[v] >= 0) {
+                this.boundary[this.boundaryOffset[this.cell[v]] + this.boundaryIndex[v]] = v;
+            }
+        }
+    }
+
+    //gives the vertices order[lo] to order[hi - 1] their own cell, or halves them
+    private void split(CompactGraph g, int lo, int hi, int maxCellSize, double cosLat) {
+        if (hi - lo <= maxCellSize) {
+            if (hi > lo) {
+                for (int i = lo; i < hi; i++) {
+                    this.cell[this.order[i]] = this.cellCount;
+                }
+                this.cellCount++;
+            }
+            return;
+        }
+        double minLon = Double.MAX_VALUE;
+        double maxLon = -Double.MAX_VALUE;
+        double minLat = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE;
+        for (int i = lo; i < hi; i++) {
+            int v = this.order[i];
+            minLon = Math.min(minLon, g.lon(v));
+            maxLon = Math.max(maxLon, g.lon(v));
+            minLat = Math.min(minLat, g.lat(v));
+            maxLat = Math.max(maxLat, g.lat(v));
+        }
+        boolean byLon = (maxLon - minLon) * cosLat >= maxLat - minLat;
+        int mid = (lo + hi) >>> 1;
+        this.select(g, lo, hi - 1, mid, byLon);
+        this.split(g, lo, mid, maxCellSize, cosLat);
+        this.split(g, mid, hi, maxCellSize, cosLat);
+    }
+
+    private static double coordinate(CompactGraph g, int v, boolean byLon) {
+        return byLon ? g.lon(v) : g.lat(v);
+    }
+
+    //quickselect, leaves the k-th vertex along the axis at k with smaller ones before it
+    private void select(CompactGraph g, int lo, int hi, int k, boolean byLon) {
+        int[] a = this.order;
+        while (lo < hi) {
+            double pivot = coordinate(g, a[(lo + hi) >>> 1], byLon);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (coordinate(g, a[i], byLon) < pivot) {
+                    i++;
+                }
+                while (coordinate(g, a[j], byLon) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int t = a[i];
+                    a[i++] = a[j];
+                    a[j--] = t;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+    * @return the number of vertices partitioned
+    */
+    public int vertexCount() {
+        return this.cell.length;
+    }
+
+    /**
+    * @return the number of cells
+    */
+    public int cellCount() {
+        return this.cellCount;
+    }
+
+    /**
+    * @param v the vertex id
+    * @return the cell of the vertex
+    */
+    public int cell(int v) {
+        return this.cell[v];
+    }
+
+    /**
+    * @param c the cell
+    * @return the number of boundary vertices of the cell
+    */
+    public int boundarySize(int c) {
+        return this.boundaryOffset[c + 1] - this.boundaryOffset[c];
+    }
+
+    /**
+    * @param c the cell
+    * @param i a position below boundarySize(c)
+    * @return the boundary vertex at that position
+    */
+    public int boundary(int c, int i) {
+        return this.boundary[this.boundaryOffset[c] + i];
+    }
+
+    /**
+    * @param v the vertex id
+    * @return the position of v among the boundary vertices of its cell, or -1
+    */
+    public int boundaryIndex(int v) {
+        return this.boundaryIndex[v];
+    }
+}
@@ -0,0 +1,256 @@
+package graphFiles;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+* Read only compressed sparse row (CSR) form of a loaded SparseGraph.
+* Vertices and edges are plain int ids. The outgoing edges of vertex v are the
+* edge ids outOffset[v] to outOffset[v + 1] - 1, so walking them touches a few
+* contiguous primitive arrays instead of a list of EdgeNode objects.
+*/
+public final class CompactGraph {
+
+    private final int[] outOffset;
+    private final int[] target;
+    private final int[] source;
+    private final double[] weight;
+    private final int[] inOffset;
+    private final int[] inEdge;
+    private final double[] lon;
+    private final double[] lat;
+    private final String[] name;
+    private final int[] origin;
+
+    CompactGraph(int[] outOffset, int[] target, int[] source, double[] weight,
+                 int[] inOffset, int[] inEdge, double[] lon, double[] lat,
+                 String[] name, int[] origin) {
+        this.outOffset = outOffset;
+        this.target = target;
+        this.source = source;
+        this.weight = weight;
+        this.inOffset = inOffset;
+        this.inEdge = inEdge;
+        this.lon = lon;
+        this.lat = lat;
+        this.name = name;
+        this.origin = origin;
+    }
+
+    /**
+    * Freezes a graph whose vertices hold their longitude and latitude and whose
+    * edges hold their weight as path information.
+    * Vertex ids follow the order of getVertices().
+    * @param g the graph to freeze
+    * @param <V> Vertex element type
+    * @param <E> Edge element type
+    * @return the compact copy of g
+    */
+    public static <V, E> CompactGraph freeze(SparseGraph<V, E> g) {
+        List<Vertex<V>> vertices = g.getVertices();
+        List<Edge<E>> edges = g.getEdges();
+        int n = vertices.size();
+        int m = edges.size();
+
+        Map<Vertex<V>, Integer> ids = new IdentityHashMap<>();
+        double[] lon = new double[n];
+        double[] lat = new double[n];
+        for (int i = 0; i < n; i++) {
+            Vertex<V> v = vertices.get(i);
+            ids.put(v, i);
+            lon[i] = g.getLon(v);
+            lat[i] = g.getLat(v);
+        }
+
+        //counts the degrees, then turns them into offsets
+        int[] from = new int[m];
+        int[] to = new int[m];
+        int[] outOffset = new int[n + 1];
+        int[] inOffset = new int[n + 1];
+        for (int i = 0; i < m; i++) {
+            Edge<E> e = edges.get(i);
+            from[i] = ids.get(g.from(e));
+            to[i] = ids.get(g.to(e));
+            outOffset[from[i] + 1]++;
+            inOffset[to[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            outOffset[v + 1] += outOffset[v];
+            inOffset[v + 1] += inOffset[v];
+        }
+
+        //places every edge in the slot of its source, then files it under its target
+        int[] target = new int[m];
+        int[] source = new int[m];
+        double[] weight = new double[m];
+        String[] name = new String[m];
+        int[] origin = new int[m];
+        int[] inEdge = new int[m];
+        int[] outNext = new int[n];
+        int[] inNext = new int[n];
+        System.arraycopy(outOffset, 0, outNext, 0, n);
+        System.arraycopy(inOffset, 0, inNext, 0, n);
+        for (int i = 0; i < m; i++) {
+            Edge<E> e = edges.get(i);
+            int id = outNext[from[i]]++;
+            target[id] = to[i];
+            source[id] = from[i];
+            weight[id] = ((Number) g.pathInfo(e)).doubleValue();
+            name[id] = String.valueOf(e.get());
+            origin[id] = i;
+        }
+        for (int id = 0; id < m; id++) {
+            inEdge[inNext[target[id]]++] = id;
+        }
+
+        return new CompactGraph(outOffset, target, source, weight, inOffset, inEdge,
+                                lon, lat, name, origin);
+    }
+
+    /**
+    * Copies the graph with new edge weights, sharing everything else.
+    * @param newWeight the weight of every edge, indexed by edge id, must not be changed afterwards
+    * @return the reweighted graph
+    */
+    public CompactGraph withWeights(double[] newWeight) {
+        if (newWeight.length != this.weight.length) {
+            throw new IllegalArgumentException();
+        }
+        return new CompactGraph(this.outOffset, this.target, this.source, newWeight,
+                                this.inOffset, this.inEdge, this.lon, this.lat,
+                                this.name, this.origin);
+    }
+
+    /**
+    * @return a copy of the weight of every edge, indexed by edge id
+    */
+    public double[] weights() {
+        return this.weight.clone();
+    }
+
+    /**
+    * Hashes the shape and the weights of the graph, so structures saved for
+    * one set of weights can be checked against the graph they are about to serve.
+    * @return the fingerprint of the graph
+    */
+    public long fingerprint() {
+        long h = 31L * this.vertexCount() + this.edgeCount();
+        for (int e = 0; e < this.edgeCount(); e++) {
+            h = h * 31 + this.target[e];
+            h = h * 31 + this.source[e];
+            h = h * 31 + Double.doubleToLongBits(this.weight[e]);
+        }
+        return h;
+    }
+
+    /**
+    * @return the number of vertices
+    */
+    public int vertexCount() {
+        return this.lon.length;
+    }
+
+    /**
+    * @return the number of edges
+    */
+    public int edgeCount() {
+        return this.target.length;
+    }
+
+    /**
+    * @param v the vertex id
+    * @return the first outgoing edge id of v
+    */
+    public int outStart(int v) {
+        return this.outOffset[v];
+    }
+
+    /**
+    * @param v the vertex id
+    * @return one past the last outgoing edge id of v
+    */
+    public int outEnd(int v) {
+        return this.outOffset[v + 1];
+    }
+
+    /**
+    * @param v the vertex id
+    * @return the first slot of v in the incoming list, see inEdge
+    */
+    public int inStart(int v) {
+        return this.inOffset[v];
+    }
+
+    /**
+    * @param v the vertex id
+    * @return one past the last slot of v in the incoming list
+    */
+    public int inEnd(int v) {
+        return this.inOffset[v + 1];
+    }
+
+    /**
+    * @param slot a slot between inStart(v) and inEnd(v)
+    * @return the id of the incoming edge stored in that slot
+    */
+    public int inEdge(int slot) {
+        return this.inEdge[slot];
+    }
+
+    /**
+    * @param e the edge id
+    * @return the vertex the edge leaves from
+    */
+    public int source(int e) {
+        return this.source[e];
+    }
+
+    /**
+    * @param e the edge id
+    * @return the vertex the edge goes to
+    */
+    public int target(int e) {
+        return this.target[e];
+    }
+
+    /**
+    * @param e the edge id
+    * @return the weight of the edge
+    */
+    public double weight(int e) {
+        return this.weight[e];
+    }
+
+    /**
+    * @param e the edge id
+    * @return the street name of the edge
+    */
+    public String name(int e) {
+        return this.name[e];
+    }
+
+    /**
+    * @param e the edge id
+    * @return the index of the edge in getEdges() of the graph it was frozen from
+    */
+    public int origin(int e) {
+        return this.origin[e];
+    }
+
+    /**
+    * @param v the vertex id
+    * @return the longitude of the vertex
+    */
+    public double lon(int v) {
+        return this.lon[v];
+    }
+
+    /**
+    * @param v the vertex id
+    * @return the latitude of the vertex
+    */
+    public double lat(int v) {
+        return this.lat[v];
+    }
+}
@@ -0,0 +1,723 @@
+package graphFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+* Contraction hierarchy over a CompactGraph. Preprocessing removes the vertices
+* one at a time, least important first, and adds a shortcut edge wherever the
+* removal would break a shortest path. A query then searches upward from both
+* ends, only ever to more important vertices, so it settles a few hundred
+* vertices however far apart the ends are.
+*
+* Hierarchy edges 0 to m - 1 are the edges of the graph, with the same ids.
+* Every later edge is a shortcut made of two hierarchy edges and is unpacked
+* back into graph edges when a route is returned.
+* The hierarchy is only valid for the weights it was built with: matches()
+* tells whether a graph still has them.
+*/
+public final class ContractionHierarchy {
+
+    private static final int MAGIC = 0x48434A53;
+    private static final int VERSION = 1;
+    private static final int HEADER = 5 * 4 + 8;
+    private static final double MAX_WEIGHT = 1e8;
+    // vertices a witness search may settle before it gives up and a shortcut is added
+    private static final int WITNESS_LIMIT = 500;
+
+    private final int graphEdges;
+    private final long fingerprint;
+    private final int[] rank;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final double[] edgeWeight;
+    // the two halves of a shortcut, -1 for graph edges
+    private final int[] firstHalf;
+    private final int[] secondHalf;
+    // hierarchy edges leaving each vertex toward a higher rank, in CSR form
+    private final int[] upOffset;
+    private final int[] upEdge;
+    private final int[] upTarget;
+    private final double[] upWeight;
+    // hierarchy edges entering each vertex from a higher rank
+    private final int[] downOffset;
+    private final int[] downEdge;
+    private final int[] downSource;
+    private final double[] downWeight;
+
+    private ContractionHierarchy(int graphEdges, long fingerprint, int[] rank, int[] edgeFrom,
+                                 int[] edgeTo, double[] edgeWeight, int[] firstHalf, int[] secondHalf) {
+        int n = rank.length;
+        int total = edgeFrom.length;
+        this.graphEdges = graphEdges;
+        this.fingerprint = fingerprint;
+        this.rank = rank;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeWeight = edgeWeight;
+        this.firstHalf = firstHalf;
+        this.secondHalf = secondHalf;
+
+        //files every edge under its lower ranked end
+        this.upOffset = new int[n + 1];
+        this.downOffset = new int[n + 1];
+        for (int c = 0; c < total; c++) {
+            if (rank[edgeFrom[c]] < rank[edgeTo[c]]) {
+                this.upOffset[edgeFrom[c] + 1]++;
+            } else {
+                this.downOffset[edgeTo[c] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            this.upOffset[v + 1] += this.upOffset[v];
+            this.downOffset[v + 1] += this.downOffset[v];
+        }
+        this.upEdge = new int[this.upOffset[n]];
+        this.upTarget = new int[this.upOffset[n]];
+        this.upWeight = new double[this.upOffset[n]];
+        this.downEdge = new int[this.downOffset[n]];
+        this.downSource = new int[this.downOffset[n]];
+        this.downWeight = new double[this.downOffset[n]];
+        int[] upNext = Arrays.copyOf(this.upOffset, n);
+        int[] downNext = Arrays.copyOf(this.downOffset, n);
+        for (int c = 0; c < total; c++) {
+            if (rank[edgeFrom[c]] < rank[edgeTo[c]]) {
+                int slot = upNext[edgeFrom[c]]++;
+                this.upEdge[slot] = c;
+                this.upTarget[slot] = edgeTo[c];
+                this.upWeight[slot] = edgeWeight[c];
+            } else {
+                int slot = downNext[edgeTo[c]]++;
+                this.downEdge[slot] = c;
+                this.downSource[slot] = edgeFrom[c];
+                this.downWeight[slot] = edgeWeight[c];
+            }
+        }
+    }
+
+    /**
+    * @param g a graph
+    * @return true if the hierarchy was built for the same graph and weights
+    */
+    public boolean matches(CompactGraph g) {
+        return g.vertexCount() == this.rank.length && g.edgeCount() == this.graphEdges
+               && g.fingerprint() == this.fingerprint;
+    }
+
+    /**
+    * @return the number of shortcuts the preprocessing added
+    */
+    public int shortcutCount() {
+        return this.edgeFrom.length - this.graphEdges;
+    }
+
+    /**
+    * Contracts every vertex of the graph. Vertices are ordered by edge difference,
+    * the shortcuts their removal adds minus the edges it removes, plus the number
+    * of neighbours already contracted so the order spreads over the map. The
+    * priorities are kept lazily: a vertex is re-rated when it reaches the top of
+    * the queue and put back if it is no longer the smallest.
+    * @param g the graph to preprocess
+    * @return the hierarchy
+    */
+    public static ContractionHierarchy build(CompactGraph g) {
+        return new Builder(g).run();
+    }
+
+    /**
+    * Working state of the preprocessing, thrown away once the hierarchy is built.
+    */
+    private static final class Builder {
+
+        private final CompactGraph graph;
+        private final int n;
+        private int total;
+        private int[] from;
+        private int[] to;
+        private double[] weight;
+        private int[] first;
+        private int[] second;
+        // hierarchy edge ids leaving and entering each vertex, pruned as neighbours are contracted
+        private final int[][] out;
+        private final int[] outSize;
+        private final int[][] in;
+        private final int[] inSize;
+        private final boolean[] contracted;
+        private final int[] deletedNeighbors;
+        // the vertex whose contraction last re-rated each vertex
+        private final int[] lastContracted;
+        private final SearchContext witness;
+
+        Builder(CompactGraph g) {
+            this.graph = g;
+            this.n = g.vertexCount();
+            int m = g.edgeCount();
+            this.total = m;
+            this.from = new int[Math.max(16, 2 * m)];
+            this.to = new int[this.from.length];
+            this.weight = new double[this.from.length];
+            this.first = new int[this.from.length];
+            this.second = new int[this.from.length];
+            this.out = new int[this.n][];
+            this.outSize = new int[this.n];
+            this.in = new int[this.n][];
+            this.inSize = new int[this.n];
+            this.contracted = new boolean[this.n];
+            this.deletedNeighbors = new int[this.n];
+            this.lastContracted = new int[this.n];
+            Arrays.fill(this.lastContracted, -1);
+            this.witness = new SearchContext(this.n);
+
+            for (int v = 0; v < this.n; v++) {
+                this.out[v] = new int[Math.max(4, g.outEnd(v) - g.outStart(v))];
+                this.in[v] = new int[Math.max(4, g.inEnd(v) - g.inStart(v))];
+            }
+            for (int e = 0; e < m; e++) {
+                this.from[e] = g.source(e);
+                this.to[e] = g.target(e);
+                this.weight[e] = g.weight(e);
+                this.first[e] = -1;
+                this.second[e] = -1;
+                this.link(e);
+            }
+        }
+
+        private void link(int c) {
+            int u = this.from[c];
+            int x = this.to[c];
+            if (this.outSize[u] == this.out[u].length) {
+                this.out[u] = Arrays.copyOf(this.out[u], this.out[u].length * 2);
+            }
+            this.out[u][this.outSize[u]++] = c;
+            if (this.inSize[x] == this.in[x].length) {
+                this.in[x] = Arrays.copyOf(this.in[x], this.in[x].length * 2);
+            }
+            this.in[x][this.inSize[x]++] = c;
+        }
+
+        private void addShortcut(int a, int b) {
+            if (this.total == this.from.length) {
+                int size = this.from.length * 2;
+                this.from = Arrays.copyOf(this.from, size);
+                this.to = Arrays.copyOf(this.to, size);
+                this.weight = Arrays.copyOf(this.weight, size);
+                this.first = Arrays.copyOf(this.first, size);
+                this.second = Arrays.copyOf(this.second, size);
+            }
+            int c = this.total++;
+            this.from[c] = this.from[a];
+            this.to[c] = this.to[b];
+            this.weight[c] = this.weight[a] + this.weight[b];
+            this.first[c] = a;
+            this.second[c] = b;
+            this.link(c);
+        }
+
+        ContractionHierarchy run() {
+            IndexedMinHeap queue = new IndexedMinHeap(this.n);
+            for (int v = 0; v < this.n; v++) {
+                queue.push(v, this.priority(v));
+            }
+            int[] rank = new int[this.n];
+            int next = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                double p = this.priority(v);
+                if (!queue.isEmpty() && p > queue.peekKey()) {
+                    queue.push(v, p);
+                    continue;
+                }
+                this.contract(v, true);
+                this.contracted[v] = true;
+                rank[v] = next++;
+
+                //the neighbours lost an edge, so their priority changed
+                for (int i = 0; i < this.outSize[v]; i++) {
+                    this.neighborContracted(queue, v, this.to[this.out[v][i]]);
+                }
+                for (int i = 0; i < this.inSize[v]; i++) {
+                    this.neighborContracted(queue, v, this.from[this.in[v][i]]);
+                }
+            }
+            int t = this.total;
+            return new ContractionHierarchy(this.graph.edgeCount(), this.graph.fingerprint(), rank,
+                                            Arrays.copyOf(this.from, t), Arrays.copyOf(this.to, t),
+                                            Arrays.copyOf(this.weight, t), Arrays.copyOf(this.first, t),
+                                            Arrays.copyOf(this.second, t));
+        }
+
+        //re-rates a neighbour once, however many edges it shared with the contracted vertex
+        private void neighborContracted(IndexedMinHeap queue, int v, int u) {
+            if (this.contracted[u] || this.lastContracted[u] == v) {
+                return;
+            }
+            this.lastContracted[u] = v;
+            this.prune(u);
+            this.deletedNeighbors[u]++;
+            queue.update(u, this.priority(u));
+        }
+
+        //drops the edges of v that lead to or come from contracted vertices
+        private void prune(int v) {
+            int kept = 0;
+            for (int i = 0; i < this.outSize[v]; i++) {
+                if (!this.contracted[this.to[this.out[v][i]]]) {
+                    this.out[v][kept++] = this.out[v][i];
+                }
+            }
+            this.outSize[v] = kept;
+            kept = 0;
+            for (int i = 0; i < this.inSize[v]; i++) {
+                if (!this.contracted[this.from[this.in[v][i]]]) {
+                    this.in[v][kept++] = this.in[v][i];
+                }
+            }
+            this.inSize[v] = kept;
+        }
+
+        private double priority(int v) {
+            int removed = 0;
+            for (int i = 0; i < this.outSize[v]; i++) {
+                if (!this.contracted[this.to[this.out[v][i]]]) {
+                    removed++;
+                }
+            }
+            for (int i = 0; i < this.inSize[v]; i++) {
+                if (!this.contracted[this.from[this.in[v][i]]]) {
+                    removed++;
+                }
+            }
+            return this.contract(v, false) - removed + this.deletedNeighbors[v];
+        }
+
+        /**
+        * Finds the shortcuts removing v needs: for every pair of remaining
+        * neighbours u to v to x, unless a witness path from u to x that avoids v is
+        * no longer. Adds them when add is set, otherwise only counts them.
+        */
+        private int contract(int v, boolean add) {
+            int shortcuts = 0;
+            int inCount = this.inSize[v];
+            int outCount = this.outSize[v];
+            for (int i = 0; i < inCount; i++) {
+                int a = this.in[v][i];
+                int u = this.from[a];
+                if (this.contracted[u] || u == v) {
+                    continue;
+                }
+                double limit = -1;
+                for (int j = 0; j < outCount; j++) {
+                    int x = this.to[this.out[v][j]];
+                    if (!this.contracted[x] && x != u && x != v) {
+                        limit = Math.max(limit, this.weight[a] + this.weight[this.out[v][j]]);
+                    }
+                }
+                if (limit < 0) {
+                    continue;
+                }
+                this.witnessSearch(u, v, limit);
+                for (int j = 0; j < outCount; j++) {
+                    int b = this.out[v][j];
+                    int x = this.to[b];
+                    if (this.contracted[x] || x == u || x == v) {
+                        continue;
+                    }
+                    if (this.witness.dist(x) > this.weight[a] + this.weight[b]) {
+                        shortcuts++;
+                        if (add) {
+                            this.addShortcut(a, b);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        //dijkstra from u over the remaining graph without v, up to the given weight
+        private void witnessSearch(int u, int v, double limit) {
+            SearchContext ctx = this.witness;
+            ctx.reset();
+            IndexedMinHeap heap = ctx.heap();
+            ctx.label(u, 0, -1);
+            heap.push(u, 0);
+            while (!heap.isEmpty() && heap.peekKey() <= limit && ctx.settledCount() < WITNESS_LIMIT) {
+                int y = heap.poll();
+                ctx.settle(y);
+                double currDistance = ctx.dist(y);
+                for (int i = 0; i < this.outSize[y]; i++) {
+                    int c = this.out[y][i];
+                    int z = this.to[c];
+                    if (this.contracted[z] || z == v) {
+                        continue;
+                    }
+                    double newWeight = currDistance + this.weight[c];
+                    if (newWeight < ctx.dist(z) && !ctx.settled(z)) {
+                        ctx.label(z, newWeight, c);
+                        heap.push(z, newWeight);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+    * Finds the lowest weight path with an upward search from each end. A vertex
+    * is stalled, and its edges skipped, when a higher ranked vertex already
+    * reaches it more cheaply, since no shortest path can pass through it then.
+    * @param start the vertex to route from
+    * @param end the vertex to route to
+    * @return the route over graph edge ids, or null if there is none
+    */
+    public Route route(int start, int end) {
+        SearchScratch scratch = SearchScratch.of(this.rank.length);
+        SearchContext fwd = scratch.context(SearchScratch.HIERARCHY_FORWARD);
+        SearchContext bwd = scratch.context(SearchScratch.HIERARCHY_BACKWARD);
+        fwd.reset();
+        bwd.reset();
+        IndexedMinHeap heapF = fwd.heap();
+        IndexedMinHeap heapB = bwd.heap();
+
+        fwd.label(start, 0, -1);
+        bwd.label(end, 0, -1);
+        heapF.push(start, 0);
+        heapB.push(end, 0);
+        double best = start == end ? 0 : MAX_WEIGHT;
+        int meet = start == end ? start : -1;
+
+        while (true) {
+            //each side stops once its queue minimum can not improve on the best path
+            boolean goF = !heapF.isEmpty() && heapF.peekKey() < best;
+            boolean goB = !heapB.isEmpty() && heapB.peekKey() < best;
+            if (!goF && !goB) {
+                break;
+            }
+            if (goF && (!goB || heapF.peekKey() <= heapB.peekKey())) {
+                int v = heapF.poll();
+                fwd.settle(v);
+                double currDistance = fwd.dist(v);
+                if (bwd.reached(v) && currDistance + bwd.dist(v) < best) {
+                    best = currDistance + bwd.dist(v);
+                    meet = v;
+                }
+                if (this.stalled(fwd, v, this.downOffset, this.downSource, this.downWeight)) {
+                    continue;
+                }
+                for (int slot = this.upOffset[v]; slot < this.upOffset[v + 1]; slot++) {
+                    int to = this.upTarget[slot];
+                    double newWeight = currDistance + this.upWeight[slot];
+                    if (newWeight < fwd.dist(to)) {
+                        fwd.label(to, newWeight, this.upEdge[slot]);
+                        heapF.push(to, newWeight);
+                    }
+                }
+            } else {
+                int v = heapB.poll();
+                bwd.settle(v);
+                double currDistance = bwd.dist(v);
+                if (fwd.reached(v) && currDistance + fwd.dist(v) < best) {
+                    best = currDistance + fwd.dist(v);
+                    meet = v;
+                }
+                if (this.stalled(bwd, v, this.upOffset, this.upTarget, this.upWeight)) {
+                    continue;
+                }
+                for (int slot = this.downOffset[v]; slot < this.downOffset[v + 1]; slot++) {
+                    int from = this.downSource[slot];
+                    double newWeight = currDistance + this.downWeight[slot];
+                    if (newWeight < bwd.dist(from)) {
+                        bwd.label(from, newWeight, this.downEdge[slot]);
+                        heapB.push(from, newWeight);
+                    }
+                }
+            }
+        }
+        if (meet < 0) {
+            return null;
+        }
+
+        //lists the hierarchy edges last first: down from the end to the meeting vertex, then back to the start
+        int up = 0;
+        int down = 0;
+        for (int v = meet; v != start; v = this.edgeFrom[fwd.parent(v)]) {
+            up++;
+        }
+        for (int v = meet; v != end; v = this.edgeTo[bwd.parent(v)]) {
+            down++;
+        }
+        int[] reversed = new int[up + down];
+        int i = down;
+        for (int v = meet; v != end; v = this.edgeTo[bwd.parent(v)]) {
+            reversed[--i] = bwd.parent(v);
+        }
+        i = down;
+        for (int v = meet; v != start; v = this.edgeFrom[fwd.parent(v)]) {
+            reversed[i++] = fwd.parent(v);
+        }
+        return new Route(this.unpack(reversed), best, fwd.settledCount() + bwd.settledCount());
+    }
+
+    /**
+    * Computes the lowest path weight from every origin to every target with
+    * buckets. Each target runs one backward upward search and leaves its
+    * distance in a bucket at every vertex it settles. Each origin then runs
+    * one upward search and reads the buckets of the vertices it settles, since
+    * every shortest path goes up from its origin and down to its target. Both
+    * rounds of searches are spread over the common fork-join pool.
+    * @param origins the vertices to route from
+    * @param targets the vertices to route to
+    * @return weight[i][j] from origins[i] to targets[j], infinite if there is no path
+    */
+    public double[][] matrix(int[] origins, int[] targets) {
+        int n = this.rank.length;
+        int[][] space = new int[targets.length][];
+        double[][] spaceDist = new double[targets.length][];
+        IntStream.range(0, targets.length).parallel().forEach(j -> {
+            SearchContext bwd = SearchScratch.of(this.rank.length).context(SearchScratch.HIERARCHY_BACKWARD);
+            space[j] = this.upward(bwd, targets[j], false);
+            spaceDist[j] = new double[space[j].length];
+            for (int k = 0; k < space[j].length; k++) {
+                spaceDist[j][k] = bwd.dist(space[j][k]);
+            }
+        });
+
+        //files the entries of the search spaces under their vertex
+        int[] bucketOffset = new int[n + 1];
+        for (int[] vertices : space) {
+            for (int v : vertices) {
+                bucketOffset[v + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            bucketOffset[v + 1] += bucketOffset[v];
+        }
+        int[] bucketTarget = new int[bucketOffset[n]];
+        double[] bucketDist = new double[bucketOffset[n]];
+        int[] next = Arrays.copyOf(bucketOffset, n);
+        for (int j = 0; j < targets.length; j++) {
+            for (int k = 0; k < space[j].length; k++) {
+                int slot = next[space[j][k]]++;
+                bucketTarget[slot] = j;
+                bucketDist[slot] = spaceDist[j][k];
+            }
+        }
+
+        double[][] weight = new double[origins.length][];
+        IntStream.range(0, origins.length).parallel().forEach(i -> {
+            SearchContext fwd = SearchScratch.of(this.rank.length).context(SearchScratch.HIERARCHY_FORWARD);
+            double[] row = new double[targets.length];
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+            for (int v : this.upward(fwd, origins[i], true)) {
+                double d = fwd.dist(v);
+                for (int slot = bucketOffset[v]; slot < bucketOffset[v + 1]; slot++) {
+                    row[bucketTarget[slot]] = Math.min(row[bucketTarget[slot]], d + bucketDist[slot]);
+                }
+            }
+            weight[i] = row;
+        });
+        return weight;
+    }
+
+    /**
+    * Settles the whole upward search space of a vertex, forward over the
+    * edges going up or backward over the edges coming down.
+    * @return the settled vertices that are not stalled, whose distances are exact
+    */
+    private int[] upward(SearchContext ctx, int root, boolean forward) {
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+        ctx.label(root, 0, -1);
+        heap.push(root, 0);
+        int[] found = new int[64];
+        int count = 0;
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            ctx.settle(v);
+            boolean stalled = forward ? this.stalled(ctx, v, this.downOffset, this.downSource, this.downWeight)
+                                      : this.stalled(ctx, v, this.upOffset, this.upTarget, this.upWeight);
+            if (stalled) {
+                continue;
+            }
+            if (count == found.length) {
+                found = Arrays.copyOf(found, count * 2);
+            }
+            found[count++] = v;
+            double currDistance = ctx.dist(v);
+            int[] offset = forward ? this.upOffset : this.downOffset;
+            int[] other = forward ? this.upTarget : this.downSource;
+            double[] weight = forward ? this.upWeight : this.downWeight;
+            int[] edge = forward ? this.upEdge : this.downEdge;
+            for (int slot = offset[v]; slot < offset[v + 1]; slot++) {
+                int to = other[slot];
+                double newWeight = currDistance + weight[slot];
+                if (newWeight < ctx.dist(to)) {
+                    ctx.label(to, newWeight, edge[slot]);
+                    heap.push(to, newWeight);
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    //true if a settled higher ranked neighbour reaches v for less than v's own distance
+    private boolean stalled(SearchContext ctx, int v, int[] offset, int[] other, double[] weight) {
+        double dist = ctx.dist(v);
+        for (int slot = offset[v]; slot < offset[v + 1]; slot++) {
+            if (ctx.dist(other[slot]) + weight[slot] < dist) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+    * Replaces shortcuts by the graph edges they stand for.
+    * @param reversed hierarchy edge ids of the path, last edge first
+    * @return graph edge ids from start to end
+    */
+    private int[] unpack(int[] reversed) {
+        int[] stack = Arrays.copyOf(reversed, Math.max(16, reversed.length));
+        int top = reversed.length;
+        int[] path = new int[Math.max(16, reversed.length)];
+        int size = 0;
+        while (top > 0) {
+            int c = stack[--top];
+            if (c < this.graphEdges) {
+                if (size == path.length) {
+                    path = Arrays.copyOf(path, size * 2);
+                }
+                path[size++] = c;
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = this.secondHalf[c];
+                stack[top++] = this.firstHalf[c];
+            }
+        }
+        return Arrays.copyOf(path, size);
+    }
+
+    /**
+    * Writes the hierarchy, replacing the file if it exists.
+    * Layout, little endian: magic, version, vertex count n, graph edge count,
+    * hierarchy edge count k, fingerprint, then rank[n], from[k], to[k],
+    * weight[k], firstHalf[k] and secondHalf[k].
+    * @param file the file to write
+    * @throws IOException if the file can not be written
+    */
+    public void write(String file) throws IOException {
+        int n = this.rank.length;
+        int k = this.edgeFrom.length;
+        long size = HEADER + 4L * n + 4L * 4 * k + 8L * k;
+        ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(this.graphEdges).putInt(k).putLong(this.fingerprint);
+        buf.asIntBuffer().put(this.rank);
+        buf.position(buf.position() + 4 * n);
+        buf.asIntBuffer().put(this.edgeFrom);
+        buf.position(buf.position() + 4 * k);
+        buf.asIntBuffer().put(this.edgeTo);
+        buf.position(buf.position() + 4 * k);
+        buf.asDoubleBuffer().put(this.edgeWeight);
+        buf.position(buf.position() + 8 * k);
+        buf.asIntBuffer().put(this.firstHalf);
+        buf.position(buf.position() + 4 * k);
+        buf.asIntBuffer().put(this.secondHalf);
+        buf.position(buf.position() + 4 * k);
+        buf.flip();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    /**
+    * Maps a hierarchy file written by write, checking every section so a
+    * truncated or corrupt file fails here rather than in a query.
+    * @param file the file to read
+    * @return the hierarchy
+    * @throws IOException if the file can not be read or is not a hierarchy
+    */
+    public static ContractionHierarchy read(String file) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buf = map.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < HEADER || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException(file + " is not a contraction hierarchy");
+        }
+        int n = buf.getInt();
+        int graphEdges = buf.getInt();
+        int k = buf.getInt();
+        long fingerprint = buf.getLong();
+        //the counts must describe exactly the bytes that follow before anything is allocated
+        if (n < 0 || graphEdges < 0 || k < graphEdges || 4L * n + 4L * 4 * k + 8L * k != buf.remaining()) {
+            throw new IOException(file + " is truncated or corrupt");
+        }
+        int[] rank = GraphSnapshot.ints(buf, n);
+        int[] from = GraphSnapshot.ints(buf, k);
+        int[] to = GraphSnapshot.ints(buf, k);
+        double[] weight = GraphSnapshot.doubles(buf, k);
+        int[] first = GraphSnapshot.ints(buf, k);
+        int[] second = GraphSnapshot.ints(buf, k);
+        if (!permutation(rank) || !GraphSnapshot.below(from, n) || !GraphSnapshot.below(to, n)
+            || !halves(first, graphEdges) || !halves(second, graphEdges)) {
+            throw new IOException(file + " is truncated or corrupt");
+        }
+        return new ContractionHierarchy(graphEdges, fingerprint, rank, from, to, weight, first, second);
+    }
+
+    //true if every rank from 0 to n - 1 is given to exactly one vertex
+    private static boolean permutation(int[] rank) {
+        boolean[] seen = new boolean[rank.length];
+        for (int r : rank) {
+            if (r < 0 || r >= rank.length || seen[r]) {
+                return false;
+            }
+            seen[r] = true;
+        }
+        return true;
+    }
+
+    //true if graph edges have no halves and every shortcut's half was added before it
+    private static boolean halves(int[] half, int graphEdges) {
+        for (int c = 0; c < half.length; c++) {
+            if (c < graphEdges ? half[c] != -1 : half[c] < 0 || half[c] >= c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+    * Preprocesses a map and writes its hierarchy.
+    * @param args the map file, text or snapshot, and the hierarchy file to write
+    */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Map Name and Hierarchy Name must be supplied");
+            return;
+        }
+        try {
+            StreetSearch search = new StreetSearch();
+            search.loadData(args[0]);
+            ContractionHierarchy ch = build(search.getRouter().getGraph());
+            ch.write(args[1]);
+            System.out.println("Added " + ch.shortcutCount() + " shortcuts, wrote "
+                               + Files.size(Paths.get(args[1])) + " bytes to " + args[1]);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
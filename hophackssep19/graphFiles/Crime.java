@@ -52,4 +52,9 @@ public class Crime {
         return this.crimeCode;
     }
 
+    //return the day the crime happened, at local midnight
+    public Date getDate() {
+        return this.date;
+    }
+
 }
@@ -8,6 +8,7 @@ package graphFiles;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -15,16 +16,16 @@ import java.io.FileWriter;
 
 public class CrimeAPI {
 
+    //url to import data from
+    private static final String FEED_URL = "https://data.baltimorecity.gov/resource/wsfq-mvij.json";
+
     //String that stores all the data imported from Open Baltimore
     private String crimeData;
 
     public CrimeAPI() {
         try {
-            //url to import data from
-            String url = "https://data.baltimorecity.gov/resource/wsfq-mvij.json";
-
             //import the data
-            crimeData = doHttpUrlConnectionAction(url);
+            crimeData = doHttpUrlConnectionAction(FEED_URL);
         } catch (Exception e) {
             System.out.println(e);
         }
@@ -35,6 +36,22 @@ public class CrimeAPI {
         return crimeData;
     }
 
+    /**
+     * Opens the Open Baltimore crime feed for reading as it downloads, to
+     * stream it through CrimeFeedReader instead of holding it as one String.
+     * @return the body of the response, the caller closes it
+     * @throws IOException if the feed can not be reached
+     */
+    public static InputStream openFeed() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(FEED_URL).openConnection();
+        connection.setRequestMethod("GET");
+
+        // give it 15 seconds to respond
+        connection.setReadTimeout(15*1000);
+        connection.connect();
+        return connection.getInputStream();
+    }
+
 
   /**
    * Method that sends a get request to the designated url and returns the
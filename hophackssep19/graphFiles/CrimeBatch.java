@@ -0,0 +1,185 @@
+package graphFiles;
+
+import java.util.Arrays;
+
+/**
+* Columnar buffer of crime records: one primitive array per field instead of a
+* Crime object per record. A reader fills it, hands it on and clears it, so the
+* same arrays carry a whole feed through in pieces. Locations and descriptions
+* are ids into dictionaries the batch keeps across clears, so an id means the
+* same string in every batch of one feed.
+*/
+public final class CrimeBatch {
+
+    private double[] lon;
+    private double[] lat;
+    private int[] code;
+    private long[] time;
+    private int[] location;
+    private int[] description;
+    private int size;
+    private final StringDictionary locations;
+    private final StringDictionary descriptions;
+
+    /**
+    * Creates an empty batch.
+    * @param capacity the number of records the batch holds before it grows
+    */
+    public CrimeBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.lon = new double[capacity];
+        this.lat = new double[capacity];
+        this.code = new int[capacity];
+        this.time = new long[capacity];
+        this.location = new int[capacity];
+        this.description = new int[capacity];
+        this.size = 0;
+        this.locations = new StringDictionary();
+        this.descriptions = new StringDictionary();
+    }
+
+    /**
+    * Packs a UCR crime code such as "5A" into an int.
+    * @param digit the leading digit of the code, '1' to '9'
+    * @param letter the letter of the code
+    * @return the packed code
+    */
+    public static int code(char digit, char letter) {
+        return digit << 16 | letter;
+    }
+
+    /**
+    * Appends a record, growing the arrays if the batch is full.
+    * @param lo the longitude of the crime
+    * @param la the latitude of the crime
+    * @param packedCode the crime code packed by code()
+    * @param seconds the local time of the crime in seconds since 1970-01-01T00:00, or 0 if unknown
+    * @param locationId the id of the address in locations(), or -1 if unknown
+    * @param descriptionId the id of the description in descriptions(), or -1 if unknown
+    */
+    void add(double lo, double la, int packedCode, long seconds, int locationId, int descriptionId) {
+        if (this.size == this.lon.length) {
+            int capacity = this.size * 2;
+            this.lon = Arrays.copyOf(this.lon, capacity);
+            this.lat = Arrays.copyOf(this.lat, capacity);
+            this.code = Arrays.copyOf(this.code, capacity);
+            this.time = Arrays.copyOf(this.time, capacity);
+            this.location = Arrays.copyOf(this.location, capacity);
+            this.description = Arrays.copyOf(this.description, capacity);
+        }
+        this.lon[this.size] = lo;
+        this.lat[this.size] = la;
+        this.code[this.size] = packedCode;
+        this.time[this.size] = seconds;
+        this.location[this.size] = locationId;
+        this.description[this.size] = descriptionId;
+        this.size++;
+    }
+
+    /**
+    * Forgets every record and keeps the arrays.
+    */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+    * @return the number of records in the batch
+    */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+    * @return true if the batch holds as many records as it can without growing
+    */
+    public boolean isFull() {
+        return this.size == this.lon.length;
+    }
+
+    /**
+    * @param i the record number
+    * @return the longitude of the crime
+    */
+    public double lon(int i) {
+        return this.lon[i];
+    }
+
+    /**
+    * @param i the record number
+    * @return the latitude of the crime
+    */
+    public double lat(int i) {
+        return this.lat[i];
+    }
+
+    /**
+    * @param i the record number
+    * @return the packed crime code
+    */
+    public int code(int i) {
+        return this.code[i];
+    }
+
+    /**
+    * @param i the record number
+    * @return the crime category, 0 to 8, from the leading digit of the code
+    */
+    public int category(int i) {
+        return (this.code[i] >>> 16) - '1';
+    }
+
+    /**
+    * @param i the record number
+    * @return the local time of the crime in seconds since 1970-01-01T00:00, or 0 if unknown
+    */
+    public long time(int i) {
+        return this.time[i];
+    }
+
+    /**
+    * @param i the record number
+    * @return the approximate address of the crime, or null if unknown
+    */
+    public String location(int i) {
+        return this.location[i] < 0 ? null : this.locations.word(this.location[i]);
+    }
+
+    /**
+    * @param i the record number
+    * @return the description of the crime, or null if unknown
+    */
+    public String description(int i) {
+        return this.description[i] < 0 ? null : this.descriptions.word(this.description[i]);
+    }
+
+    /**
+    * @param i the record number
+    * @return the id of the address in locations(), or -1 if unknown
+    */
+    int locationId(int i) {
+        return this.location[i];
+    }
+
+    /**
+    * @param i the record number
+    * @return the id of the description in descriptions(), or -1 if unknown
+    */
+    int descriptionId(int i) {
+        return this.description[i];
+    }
+
+    /**
+    * @return the dictionary of the addresses
+    */
+    StringDictionary locations() {
+        return this.locations;
+    }
+
+    /**
+    * @return the dictionary of the descriptions
+    */
+    StringDictionary descriptions() {
+        return this.descriptions;
+    }
+}
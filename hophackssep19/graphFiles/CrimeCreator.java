@@ -9,7 +9,7 @@ package graphFiles;
 
 import java.util.Scanner;
 import java.io.File;
-import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.LinkedList;
 
@@ -51,7 +51,8 @@ public class CrimeCreator {
                 cs.findInLine("total_incidents\":\"");
                 String incidents = cs.findInLine("\\d");
 
-                Crime crime = new Crime(new Date(),//Integer.parseInt(year), Integer.parseInt(month), Integer.parseInt(day)),
+                Crime crime = new Crime(new GregorianCalendar(Integer.parseInt(year),
+                                            Integer.parseInt(month) - 1, Integer.parseInt(day)).getTime(),
                                     code,
                                     location,
                                     description,
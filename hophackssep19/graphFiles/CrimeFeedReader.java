@@ -0,0 +1,350 @@
+package graphFiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+* Streaming parser for the Open Baltimore crime feed, a JSON array of flat
+* records such as {"crimedate":"2019-06-24T00:00:00.000","crimetime":"22:53:00",
+* "crimecode":"5A",...,"longitude":"-76.6164280","latitude":"39.2820166",...}.
+*
+* Bytes are read through a fixed buffer and parsed in place. Only the time,
+* code, position, address and description are kept, written straight into a
+* CrimeBatch, and the batch is passed to the sink every time it fills up, so
+* memory only grows with the number of distinct addresses and descriptions,
+* not with the length of the feed. Records without a position or a valid code
+* are skipped.
+*/
+public final class CrimeFeedReader {
+
+    private static final int CHUNK = 1 << 16;
+    private static final byte[] CRIMEDATE = bytes("crimedate");
+    private static final byte[] CRIMETIME = bytes("crimetime");
+    private static final byte[] CRIMECODE = bytes("crimecode");
+    private static final byte[] LONGITUDE = bytes("longitude");
+    private static final byte[] LATITUDE = bytes("latitude");
+    private static final byte[] LOCATION = bytes("location");
+    private static final byte[] DESCRIPTION = bytes("description");
+    private static final byte[][] KEYS = {CRIMEDATE, CRIMETIME, CRIMECODE, LONGITUDE, LATITUDE,
+                                          LOCATION, DESCRIPTION};
+
+    private final InputStream in;
+    private final byte[] buf = new byte[CHUNK];
+    private int pos = 0;
+    private int end = 0;
+    // the bytes of the last string read, without quotes and escapes
+    private byte[] text = new byte[256];
+    private int textLength = 0;
+    private int kept = 0;
+
+    // fields of the record being parsed
+    private double lon;
+    private double lat;
+    private int code;
+    private long day;
+    private long dayTime;
+    private long clock;
+    private int location;
+    private int description;
+    private CrimeBatch batch;
+
+    private CrimeFeedReader(InputStream in) {
+        this.in = in;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+    * Parses a whole feed, handing the records to the sink in batches.
+    * @param in the feed, left open
+    * @param sink receives the records
+    * @param batchSize the most records passed to the sink at once
+    * @return the number of records passed to the sink
+    * @throws IOException if the feed can not be read or is not a JSON array
+    */
+    public static int read(InputStream in, CrimeSink sink, int batchSize) throws IOException {
+        CrimeFeedReader reader = new CrimeFeedReader(in);
+        CrimeBatch batch = new CrimeBatch(batchSize);
+        reader.parse(batch, sink);
+        if (batch.size() > 0) {
+            sink.accept(batch);
+            batch.clear();
+        }
+        return reader.kept;
+    }
+
+    private void parse(CrimeBatch batch, CrimeSink sink) throws IOException {
+        int c = this.skipSpace();
+        if (c != '[') {
+            throw new IOException("crime feed is not a JSON array");
+        }
+        this.pos++;
+        c = this.skipSpace();
+        if (c == ']') {
+            return;
+        }
+        while (true) {
+            if (c == '{') {
+                this.parseRecord(batch);
+                if (batch.isFull()) {
+                    sink.accept(batch);
+                    batch.clear();
+                }
+            } else {
+                this.skipValue();
+            }
+            c = this.skipSpace();
+            if (c == ',') {
+                this.pos++;
+                c = this.skipSpace();
+            } else if (c == ']') {
+                return;
+            } else {
+                throw new IOException("crime feed is not a JSON array");
+            }
+        }
+    }
+
+    //reads one object, keeping the fields a CrimeBatch holds
+    private void parseRecord(CrimeBatch batch) throws IOException {
+        this.batch = batch;
+        this.lon = Double.NaN;
+        this.lat = Double.NaN;
+        this.code = 0;
+        this.day = 0;
+        this.dayTime = 0;
+        this.clock = -1;
+        this.location = -1;
+        this.description = -1;
+
+        this.pos++;
+        int c = this.skipSpace();
+        while (c != '}') {
+            if (c != '"') {
+                throw new IOException("crime feed record has a malformed key");
+            }
+            this.readString();
+            byte[] key = this.matchKey();
+            if (this.skipSpace() != ':') {
+                throw new IOException("crime feed record has a malformed key");
+            }
+            this.pos++;
+            c = this.skipSpace();
+            if (key != null && c == '"') {
+                this.readString();
+                this.field(key);
+            } else if (key != null && (c == '-' || (c >= '0' && c <= '9'))) {
+                this.readNumber();
+                this.field(key);
+            } else {
+                this.skipValue();
+            }
+            c = this.skipSpace();
+            if (c == ',') {
+                this.pos++;
+                c = this.skipSpace();
+            } else if (c != '}') {
+                throw new IOException("crime feed record is not closed");
+            }
+        }
+        this.pos++;
+
+        if (Double.isNaN(this.lon) || Double.isNaN(this.lat) || this.code == 0) {
+            return;
+        }
+        long seconds = this.day == 0 ? 0 : this.day * 86400 + (this.clock >= 0 ? this.clock : this.dayTime);
+        batch.add(this.lon, this.lat, this.code, seconds, this.location, this.description);
+        this.kept++;
+    }
+
+    //the known key equal to the last string read, or null
+    private byte[] matchKey() {
+        for (byte[] key : KEYS) {
+            if (key.length == this.textLength
+                && Arrays.equals(key, 0, key.length, this.text, 0, this.textLength)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    //stores the last string read as the value of the key
+    private void field(byte[] key) {
+        byte[] t = this.text;
+        int n = this.textLength;
+        if (key == LONGITUDE) {
+            this.lon = EdgeListReader.parseDouble(t, 0, n);
+        } else if (key == LATITUDE) {
+            this.lat = EdgeListReader.parseDouble(t, 0, n);
+        } else if (key == CRIMECODE) {
+            if (n >= 2 && t[0] >= '1' && t[0] <= '9') {
+                this.code = CrimeBatch.code((char) t[0], (char) t[1]);
+            }
+        } else if (key == CRIMEDATE) {
+            //2019-06-24T00:00:00.000
+            if (n >= 10 && t[4] == '-' && t[7] == '-') {
+                this.day = daysSinceEpoch(digits(t, 0, 4), digits(t, 5, 2), digits(t, 8, 2));
+                if (n >= 19 && t[10] == 'T') {
+                    this.dayTime = Math.max(0, clock(t, 11, n));
+                }
+            }
+        } else if (key == CRIMETIME) {
+            this.clock = clock(t, 0, n);
+        } else if (key == LOCATION) {
+            this.location = this.batch.locations().id(t, 0, n);
+        } else if (key == DESCRIPTION) {
+            this.description = this.batch.descriptions().id(t, 0, n);
+        }
+    }
+
+    //seconds into the day of a time written as HH:MM, HH:MM:SS or HHMM
+    private static long clock(byte[] t, int start, int end) {
+        long hours;
+        long minutes;
+        long seconds = 0;
+        if (end - start >= 5 && t[start + 2] == ':') {
+            hours = digits(t, start, 2);
+            minutes = digits(t, start + 3, 2);
+            if (end - start >= 8 && t[start + 5] == ':') {
+                seconds = digits(t, start + 6, 2);
+            }
+        } else if (end - start == 4) {
+            hours = digits(t, start, 2);
+            minutes = digits(t, start + 2, 2);
+        } else {
+            return -1;
+        }
+        if (hours < 0 || minutes < 0 || seconds < 0) {
+            return -1;
+        }
+        return hours * 3600 + minutes * 60 + seconds;
+    }
+
+    //the number written in count digits from start, -1 if one is not a digit
+    private static int digits(byte[] t, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            if (t[i] < '0' || t[i] > '9') {
+                return -1;
+            }
+            value = value * 10 + (t[i] - '0');
+        }
+        return value;
+    }
+
+    //days from 1970-01-01 to a date of the proleptic Gregorian calendar
+    private static long daysSinceEpoch(int year, int month, int day) {
+        if (year < 0 || month < 1 || month > 12 || day < 1) {
+            return 0;
+        }
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    //makes sure the byte at pos is buffered, returns it or -1 at the end of the feed
+    private int peek() throws IOException {
+        if (this.pos == this.end) {
+            this.end = this.in.read(this.buf, 0, this.buf.length);
+            this.pos = 0;
+            if (this.end <= 0) {
+                this.end = 0;
+                return -1;
+            }
+        }
+        return this.buf[this.pos];
+    }
+
+    private int skipSpace() throws IOException {
+        int c = this.peek();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            this.pos++;
+            c = this.peek();
+        }
+        if (c < 0) {
+            throw new IOException("crime feed ends early");
+        }
+        return c;
+    }
+
+    //reads the string starting at pos into text
+    private void readString() throws IOException {
+        this.pos++;
+        this.textLength = 0;
+        while (true) {
+            int c = this.peek();
+            if (c < 0) {
+                throw new IOException("crime feed ends inside a string");
+            }
+            this.pos++;
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = this.peek();
+                if (c < 0) {
+                    throw new IOException("crime feed ends inside a string");
+                }
+                this.pos++;
+                //keeps the escaped character itself, the fields kept never need more
+                if (c == 'u') {
+                    for (int i = 0; i < 4 && this.peek() >= 0; i++) {
+                        this.pos++;
+                    }
+                    c = '?';
+                }
+            }
+            if (this.textLength == this.text.length) {
+                this.text = Arrays.copyOf(this.text, this.text.length * 2);
+            }
+            this.text[this.textLength++] = (byte) c;
+        }
+    }
+
+    //reads the number starting at pos into text
+    private void readNumber() throws IOException {
+        this.textLength = 0;
+        int c = this.peek();
+        while (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9')) {
+            if (this.textLength == this.text.length) {
+                this.text = Arrays.copyOf(this.text, this.text.length * 2);
+            }
+            this.text[this.textLength++] = (byte) c;
+            this.pos++;
+            c = this.peek();
+        }
+    }
+
+    //skips a string, number, literal, object or array
+    private void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            int c = this.skipSpace();
+            if (c == '"') {
+                this.readString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+                this.pos++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                this.pos++;
+            } else if (c == ',' || c == ':') {
+                this.pos++;
+            } else {
+                //a number or literal runs until the next separator
+                while (c >= 0 && c != ',' && c != '}' && c != ']' && c != ' '
+                       && c != '\n' && c != '\r' && c != '\t') {
+                    this.pos++;
+                    c = this.peek();
+                }
+            }
+        } while (depth > 0);
+    }
+}
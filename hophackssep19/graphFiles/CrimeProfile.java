@@ -0,0 +1,198 @@
+package graphFiles;
+
+import java.nio.ByteBuffer;
+
+/**
+* How the crime on every road is spread over the hours of the day or of the
+* week. Each road gets one byte per hour, the share of its crimes in that hour
+* relative to the hourly average of the road, so a road with the average
+* crime at 2 AM and none at 2 PM weighs more at night. The bytes of all roads
+* sit in direct buffers outside the Java heap, a day profile costs 24 bytes
+* a road and a week profile 168.
+*
+* The buffers hold BLOCK_EDGES roads each. Adding crimes copies only the
+* blocks of the roads they fall on and shares the others with the profile
+* before, so a crime update costs in proportion to the roads it changes. The
+* hourly counts behind the bytes are kept for the roads with crimes and move
+* on to the new profile.
+*
+* A road weighs its length plus its crime penalty times the factor of the hour
+* it is entered in. Crimes without a known time only raise the average.
+*/
+public final class CrimeProfile {
+
+    /** One bucket per hour of the day. */
+    public static final int HOURS_OF_DAY = 24;
+    /** One bucket per hour of the week, starting on Thursday 00:00. */
+    public static final int HOURS_OF_WEEK = 24 * 7;
+
+    private static final long HOUR = 3600000;
+    // a byte b stands for the factor b / SCALE, so up to four times the average
+    private static final double SCALE = 64;
+    // crimes spread evenly over the hours of every road before its own are added
+    private static final double SMOOTHING = 1;
+    // roads per buffer, the unit copied when crimes are added
+    private static final int BLOCK_EDGES = 256;
+
+    private final int edgeCount;
+    private final int buckets;
+    // the factor of road e at hour b is byte (e % BLOCK_EDGES) * buckets + b of block e / BLOCK_EDGES, quantized
+    private final ByteBuffer[] blocks;
+    private final double[] base;
+    // dated crimes of each road by hour, null for roads without any, and all crimes of each road;
+    // held by the newest profile only, null once handed on by add
+    private int[][] hourly;
+    private int[] total;
+
+    private CrimeProfile(int edgeCount, int buckets, ByteBuffer[] blocks, double[] base, int[][] hourly,
+                         int[] total) {
+        this.edgeCount = edgeCount;
+        this.buckets = buckets;
+        this.blocks = blocks;
+        this.base = base;
+        this.hourly = hourly;
+        this.total = total;
+    }
+
+    /**
+    * Buckets the crimes of each road by the hour they happened.
+    * @param baseWeights the length of every road by edge id, copied
+    * @param history the crimes, snapped to their roads
+    * @param records the record ids of the crimes to count
+    * @param buckets HOURS_OF_DAY or HOURS_OF_WEEK
+    * @return the profiles
+    * @throws IllegalArgumentException if the number of buckets is neither
+    */
+    public static CrimeProfile build(double[] baseWeights, CrimeStore history, int[] records, int buckets) {
+        if (buckets != HOURS_OF_DAY && buckets != HOURS_OF_WEEK) {
+            throw new IllegalArgumentException();
+        }
+        int m = baseWeights.length;
+        ByteBuffer[] blocks = new ByteBuffer[(m + BLOCK_EDGES - 1) / BLOCK_EDGES];
+        for (int k = 0; k < blocks.length; k++) {
+            blocks[k] = ByteBuffer.allocateDirect(Math.min(BLOCK_EDGES, m - k * BLOCK_EDGES) * buckets);
+        }
+        CrimeProfile p = new CrimeProfile(m, buckets, blocks, baseWeights.clone(), new int[m][], new int[m]);
+        p.count(history, records);
+        for (int e = 0; e < m; e++) {
+            p.quantize(e);
+        }
+        return p;
+    }
+
+    /**
+    * Counts more crimes on top of the ones of this profile. Only the blocks
+    * of roads that get a crime are copied and quantized again, the new
+    * profile shares every other block with this one, which keeps the factors
+    * it had but hands its counts on and can not be added to again.
+    * @param history the crimes, snapped to their roads
+    * @param records the record ids of the crimes to add
+    * @return the new profile
+    * @throws IllegalStateException if crimes were already added to this profile
+    */
+    public CrimeProfile add(CrimeStore history, int[] records) {
+        if (this.hourly == null) {
+            throw new IllegalStateException();
+        }
+        ByteBuffer[] copied = this.blocks.clone();
+        CrimeProfile p = new CrimeProfile(this.edgeCount, this.buckets, copied, this.base, this.hourly,
+                                          this.total);
+        this.hourly = null;
+        this.total = null;
+        p.count(history, records);
+        for (int i : records) {
+            int e = history.edge(i);
+            if (e < 0) {
+                continue;
+            }
+            int k = e / BLOCK_EDGES;
+            if (copied[k] == this.blocks[k]) {
+                //copies the whole block whatever position an earlier copy left it at
+                ByteBuffer from = this.blocks[k].duplicate();
+                from.clear();
+                ByteBuffer block = ByteBuffer.allocateDirect(from.capacity());
+                block.put(from);
+                copied[k] = block;
+            }
+            p.quantize(e);
+        }
+        return p;
+    }
+
+    //adds crimes to the counts of their roads
+    private void count(CrimeStore history, int[] records) {
+        for (int i : records) {
+            int e = history.edge(i);
+            if (e < 0) {
+                continue;
+            }
+            this.total[e]++;
+            long millis = history.epochMillis(i);
+            if (millis != 0) {
+                if (this.hourly[e] == null) {
+                    this.hourly[e] = new int[this.buckets];
+                }
+                this.hourly[e][bucket(millis, this.buckets)]++;
+            }
+        }
+    }
+
+    //writes the factors of a road from its counts
+    private void quantize(int e) {
+        ByteBuffer block = this.blocks[e / BLOCK_EDGES];
+        int at = e % BLOCK_EDGES * this.buckets;
+        int[] count = this.hourly[e];
+        //the undated crimes count towards the average but no single hour
+        double average = (this.total[e] + SMOOTHING * this.buckets) / this.buckets;
+        for (int b = 0; b < this.buckets; b++) {
+            long q = Math.round(((count == null ? 0 : count[b]) + SMOOTHING) / average * SCALE);
+            block.put(at + b, (byte) Math.min(255, q));
+        }
+    }
+
+    private static int bucket(long millis, int buckets) {
+        return (int) Math.floorMod(Math.floorDiv(millis, HOUR), (long) buckets);
+    }
+
+    /**
+    * @return the number of roads profiled
+    */
+    public int edgeCount() {
+        return this.edgeCount;
+    }
+
+    /**
+    * @return the number of hours a profile covers before it repeats
+    */
+    public int buckets() {
+        return this.buckets;
+    }
+
+    /**
+    * @param e the edge id
+    * @return the length of the road, its weight without crime
+    */
+    public double base(int e) {
+        return this.base[e];
+    }
+
+    /**
+    * @param e the edge id
+    * @param millis a local time in milliseconds since 1970-01-01T00:00
+    * @return the share of the crime penalty the road carries at that time
+    */
+    public double factor(int e, long millis) {
+        ByteBuffer block = this.blocks[e / BLOCK_EDGES];
+        return (block.get(e % BLOCK_EDGES * this.buckets + bucket(millis, this.buckets)) & 0xff) / SCALE;
+    }
+
+    /**
+    * @param e the edge id
+    * @param weight the weight of the road averaged over the hours
+    * @param millis the local time the road is entered
+    * @return the weight of the road at that time
+    */
+    public double weight(int e, double weight, long millis) {
+        return this.base[e] + (weight - this.base[e]) * this.factor(e, millis);
+    }
+}
@@ -0,0 +1,13 @@
+package graphFiles;
+
+/**
+* Receives crime records from a CrimeFeedReader as they are parsed.
+*/
+public interface CrimeSink {
+
+    /**
+    * @param batch the records parsed since the last call, cleared and refilled
+    *              by the reader once this returns
+    */
+    void accept(CrimeBatch batch);
+}
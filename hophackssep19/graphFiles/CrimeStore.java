@@ -0,0 +1,348 @@
+package graphFiles;
+
+import java.util.Arrays;
+
+/**
+* Every crime seen so far, stored column by column: primitive arrays for the
+* position, class and time, and dictionary ids for the address and
+* description, which repeat a lot. A record takes about forty bytes and no
+* objects, so years of history fit in memory and a scan over a column reads
+* it front to back instead of chasing a pointer per crime.
+*
+* Records can be selected by time window and crime class. The store keeps the
+* record ids sorted by time, extended with every scan that finds new records,
+* so a window is found by binary search. The store is not thread safe.
+*/
+public final class CrimeStore {
+
+    /** Class mask selecting every crime class. */
+    public static final int ALL_CLASSES = (1 << EdgeCrimes.CATEGORIES) - 1;
+
+    private static final int INSERTION_SORT = 16;
+
+    private double[] lon;
+    private double[] lat;
+    // the leading digit of the UCR code as 0 to 8, and its letter
+    private byte[] codeClass;
+    private byte[] codeLetter;
+    private long[] epochMillis;
+    private int[] location;
+    private int[] description;
+    // the road the crime was snapped to, -1 if it was not
+    private int[] edge;
+    private int size;
+    private final StringDictionary locations;
+    private final StringDictionary descriptions;
+    // the first indexed record ids, sorted by time
+    private int[] byTime;
+    private int indexed;
+    // dictionary ids of the last batch added, translated to the store's
+    private StringDictionary batchLocations;
+    private int[] locationIds;
+    private StringDictionary batchDescriptions;
+    private int[] descriptionIds;
+
+    /**
+    * Creates an empty store.
+    */
+    public CrimeStore() {
+        this.lon = new double[16];
+        this.lat = new double[16];
+        this.codeClass = new byte[16];
+        this.codeLetter = new byte[16];
+        this.epochMillis = new long[16];
+        this.location = new int[16];
+        this.description = new int[16];
+        this.edge = new int[16];
+        this.size = 0;
+        this.locations = new StringDictionary();
+        this.descriptions = new StringDictionary();
+        this.byTime = new int[0];
+        this.indexed = 0;
+        this.locationIds = new int[0];
+        this.descriptionIds = new int[0];
+    }
+
+    /**
+    * Adds a crime.
+    * @param lo the longitude of the crime
+    * @param la the latitude of the crime
+    * @param packedCode the crime code packed by CrimeBatch.code
+    * @param millis the local time of the crime in milliseconds since 1970-01-01T00:00, or 0 if unknown
+    * @param address the approximate address of the crime, or null if unknown
+    * @param about the description of the crime, or null if unknown
+    * @return the record id of the crime
+    * @throws IllegalArgumentException if the code does not start with a digit 1 to 9
+    */
+    public int add(double lo, double la, int packedCode, long millis, String address, String about) {
+        return this.append(lo, la, packedCode, millis,
+                           address == null ? -1 : this.locations.id(address),
+                           about == null ? -1 : this.descriptions.id(about));
+    }
+
+    /**
+    * Adds every crime of a batch, in order.
+    * @param batch the crimes to add
+    * @return the record id of the first crime of the batch
+    */
+    public int addAll(CrimeBatch batch) {
+        int first = this.size;
+        if (batch.locations() != this.batchLocations) {
+            this.batchLocations = batch.locations();
+            this.locationIds = new int[0];
+        }
+        if (batch.descriptions() != this.batchDescriptions) {
+            this.batchDescriptions = batch.descriptions();
+            this.descriptionIds = new int[0];
+        }
+        this.locationIds = translate(this.locationIds, this.batchLocations, this.locations);
+        this.descriptionIds = translate(this.descriptionIds, this.batchDescriptions, this.descriptions);
+        for (int i = 0; i < batch.size(); i++) {
+            int l = batch.locationId(i);
+            int d = batch.descriptionId(i);
+            this.append(batch.lon(i), batch.lat(i), batch.code(i), batch.time(i) * 1000,
+                        l < 0 ? -1 : this.locationIds[l], d < 0 ? -1 : this.descriptionIds[d]);
+        }
+        return first;
+    }
+
+    //extends the translation of ids to the words the source dictionary gained since
+    private static int[] translate(int[] ids, StringDictionary from, StringDictionary to) {
+        int known = ids.length;
+        if (known == from.size()) {
+            return ids;
+        }
+        ids = Arrays.copyOf(ids, from.size());
+        for (int id = known; id < ids.length; id++) {
+            ids[id] = to.id(from.word(id));
+        }
+        return ids;
+    }
+
+    private int append(double lo, double la, int packedCode, long millis, int address, int about) {
+        int digit = packedCode >>> 16;
+        if (digit < '1' || digit > '9') {
+            throw new IllegalArgumentException();
+        }
+        if (this.size == this.lon.length) {
+            int capacity = this.size * 2;
+            this.lon = Arrays.copyOf(this.lon, capacity);
+            this.lat = Arrays.copyOf(this.lat, capacity);
+            this.codeClass = Arrays.copyOf(this.codeClass, capacity);
+            this.codeLetter = Arrays.copyOf(this.codeLetter, capacity);
+            this.epochMillis = Arrays.copyOf(this.epochMillis, capacity);
+            this.location = Arrays.copyOf(this.location, capacity);
+            this.description = Arrays.copyOf(this.description, capacity);
+            this.edge = Arrays.copyOf(this.edge, capacity);
+        }
+        int i = this.size++;
+        this.lon[i] = lo;
+        this.lat[i] = la;
+        this.codeClass[i] = (byte) (digit - '1');
+        this.codeLetter[i] = (byte) packedCode;
+        this.epochMillis[i] = millis;
+        this.location[i] = address;
+        this.description[i] = about;
+        this.edge[i] = -1;
+        return i;
+    }
+
+    /**
+    * @return the number of crimes stored
+    */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+    * @param i the record id
+    * @return the longitude of the crime
+    */
+    public double lon(int i) {
+        return this.lon[i];
+    }
+
+    /**
+    * @param i the record id
+    * @return the latitude of the crime
+    */
+    public double lat(int i) {
+        return this.lat[i];
+    }
+
+    /**
+    * @param i the record id
+    * @return the crime class, 0 to 8, from the leading digit of the code
+    */
+    public int codeClass(int i) {
+        return this.codeClass[i];
+    }
+
+    /**
+    * @param i the record id
+    * @return the UCR crime code, such as 5A
+    */
+    public String code(int i) {
+        return new String(new char[] {(char) ('1' + this.codeClass[i]), (char) (this.codeLetter[i] & 0xff)});
+    }
+
+    /**
+    * @param i the record id
+    * @return the local time of the crime in milliseconds since 1970-01-01T00:00, or 0 if unknown
+    */
+    public long epochMillis(int i) {
+        return this.epochMillis[i];
+    }
+
+    /**
+    * @param i the record id
+    * @return the approximate address of the crime, or null if unknown
+    */
+    public String location(int i) {
+        return this.location[i] < 0 ? null : this.locations.word(this.location[i]);
+    }
+
+    /**
+    * @param i the record id
+    * @return the description of the crime, or null if unknown
+    */
+    public String description(int i) {
+        return this.description[i] < 0 ? null : this.descriptions.word(this.description[i]);
+    }
+
+    /**
+    * @param i the record id
+    * @return the edge id of the road the crime was snapped to, or -1
+    */
+    public int edge(int i) {
+        return this.edge[i];
+    }
+
+    /**
+    * Records the road a crime was snapped to, so later scans do not snap it again.
+    * @param i the record id
+    * @param e the edge id of the road, or -1
+    */
+    public void setEdge(int i, int e) {
+        this.edge[i] = e;
+    }
+
+    /**
+    * @param i the record id
+    * @return the id of the address, equal for crimes at the same address, or -1
+    */
+    public int locationId(int i) {
+        return this.location[i];
+    }
+
+    /**
+    * @return the number of distinct addresses
+    */
+    public int locationCount() {
+        return this.locations.size();
+    }
+
+    /**
+    * @param classes the crime classes, 0 to 8
+    * @return the mask selecting those classes
+    */
+    public static int classMask(int... classes) {
+        int mask = 0;
+        for (int c : classes) {
+            mask |= 1 << c;
+        }
+        return mask;
+    }
+
+    /**
+    * Finds the crimes in a time window whose class is in the mask.
+    * @param from the earliest time selected, in local milliseconds since 1970-01-01T00:00
+    * @param until the first time after the window
+    * @param classMask bit c set to select class c, ALL_CLASSES for every class
+    * @return the record ids selected, in time order
+    */
+    public int[] select(long from, long until, int classMask) {
+        this.indexByTime();
+        int lo = this.firstAtOrAfter(from);
+        int hi = Math.max(lo, this.firstAtOrAfter(until));
+        int[] selected = new int[hi - lo];
+        int count = 0;
+        for (int k = lo; k < hi; k++) {
+            int i = this.byTime[k];
+            if ((classMask >>> this.codeClass[i] & 1) != 0) {
+                selected[count++] = i;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    //position in byTime of the first record not earlier than time
+    private int firstAtOrAfter(long time) {
+        int lo = 0;
+        int hi = this.indexed;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.epochMillis[this.byTime[mid]] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    //sorts the records added since the last scan and merges them into the time order
+    private void indexByTime() {
+        if (this.indexed == this.size) {
+            return;
+        }
+        int[] order = Arrays.copyOf(this.byTime, this.size);
+        for (int i = this.indexed; i < this.size; i++) {
+            order[i] = i;
+        }
+        int[] scratch = new int[this.size];
+        this.sort(order, scratch, this.indexed, this.size);
+        if (this.indexed > 0) {
+            this.merge(order, scratch, 0, this.indexed, this.size);
+        }
+        this.byTime = order;
+        this.indexed = this.size;
+    }
+
+    //stable merge sort of a[lo] to a[hi - 1] by time
+    private void sort(int[] a, int[] scratch, int lo, int hi) {
+        if (hi - lo <= INSERTION_SORT) {
+            for (int i = lo + 1; i < hi; i++) {
+                int r = a[i];
+                int j = i;
+                while (j > lo && this.epochMillis[a[j - 1]] > this.epochMillis[r]) {
+                    a[j] = a[j - 1];
+                    j--;
+                }
+                a[j] = r;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        this.sort(a, scratch, lo, mid);
+        this.sort(a, scratch, mid, hi);
+        this.merge(a, scratch, lo, mid, hi);
+    }
+
+    //merges the sorted runs a[lo] to a[mid - 1] and a[mid] to a[hi - 1]
+    private void merge(int[] a, int[] scratch, int lo, int mid, int hi) {
+        if (this.epochMillis[a[mid - 1]] <= this.epochMillis[a[mid]]) {
+            return;
+        }
+        System.arraycopy(a, lo, scratch, lo, hi - lo);
+        int i = lo;
+        int j = mid;
+        for (int k = lo; k < hi; k++) {
+            if (j == hi || (i < mid && this.epochMillis[scratch[i]] <= this.epochMillis[scratch[j]])) {
+                a[k] = scratch[i++];
+            } else {
+                a[k] = scratch[j++];
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package graphFiles;
+
+import java.util.Arrays;
+
+/**
+* Crime scores of every edge that fade with the age of each incident, halving
+* every half life. Scores are flat double arrays indexed by edge id, each edge
+* stamped with the time its scores were last brought up to date, and decay is
+* only applied to an edge when it is read or gets a new crime.
+*
+* Only edges whose total score is at least RETIRED are active and add weight,
+* so advancing the clock touches just those. An edge whose crimes fade below
+* RETIRED stops adding weight without a rebuild of the other edges, and comes
+* back if new crimes lift it again.
+*
+* The penalty of an edge with a total score of at least one is the one
+* EdgeCrimes gives the scores as counts, so fresh crimes weigh what they do
+* without decay. Below a total of one it shrinks in proportion, reaching
+* nothing at RETIRED, so a road fades back to its length without a jump when
+* its last crimes grow old.
+*/
+public final class DecayedCrimes {
+
+    /** Total score under which the crimes of an edge add no weight. */
+    public static final double RETIRED = 0.05;
+
+    private static final int CATEGORIES = EdgeCrimes.CATEGORIES;
+
+    // score[e * CATEGORIES + c], up to date at stamp[e]
+    private final double[] score;
+    private final long[] stamp;
+    private final long halfLife;
+    private final double rate;
+    private long now;
+    // the active edges, and the position of each edge in that list or -1
+    private int[] active;
+    private int activeCount;
+    private final int[] activeIndex;
+
+    /**
+    * Creates scores with no crimes.
+    * @param edgeCount the number of edges of the graph
+    * @param halfLifeMillis the age in milliseconds at which a crime counts half
+    * @param nowMillis the current local time in milliseconds since 1970-01-01T00:00
+    * @throws IllegalArgumentException if the half life is not positive
+    */
+    public DecayedCrimes(int edgeCount, long halfLifeMillis, long nowMillis) {
+        if (halfLifeMillis <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.score = new double[edgeCount * CATEGORIES];
+        this.stamp = new long[edgeCount];
+        this.halfLife = halfLifeMillis;
+        this.rate = Math.log(2) / halfLifeMillis;
+        this.now = nowMillis;
+        this.active = new int[16];
+        this.activeCount = 0;
+        this.activeIndex = new int[edgeCount];
+        Arrays.fill(this.activeIndex, -1);
+    }
+
+    /**
+    * @return the age in milliseconds at which a crime counts half
+    */
+    public long halfLife() {
+        return this.halfLife;
+    }
+
+    /**
+    * @return the time the scores are decayed to
+    */
+    public long now() {
+        return this.now;
+    }
+
+    /**
+    * @return the number of edges whose crimes add weight
+    */
+    public int activeCount() {
+        return this.activeCount;
+    }
+
+    /**
+    * Adds a crime to an edge, counting less the older it is.
+    * @param e the edge id
+    * @param category the identifier of the category of the crime
+    * @param millis the local time of the crime, 0 if unknown to count it as new
+    */
+    public void add(int e, int category, long millis) {
+        this.refresh(e);
+        double w = millis == 0 || millis >= this.now ? 1 : Math.exp(-this.rate * (this.now - millis));
+        this.score[e * CATEGORIES + category] += w;
+        if (this.activeIndex[e] < 0 && this.total(e) >= RETIRED) {
+            if (this.activeCount == this.active.length) {
+                this.active = Arrays.copyOf(this.active, this.activeCount * 2);
+            }
+            this.activeIndex[e] = this.activeCount;
+            this.active[this.activeCount++] = e;
+        }
+    }
+
+    //decays the scores of an edge to now
+    private void refresh(int e) {
+        if (this.stamp[e] == this.now) {
+            return;
+        }
+        double factor = this.decay(e);
+        for (int i = e * CATEGORIES; i < (e + 1) * CATEGORIES; i++) {
+            this.score[i] *= factor;
+        }
+        this.stamp[e] = this.now;
+    }
+
+    //sum of the stored scores of an edge
+    private double total(int e) {
+        double total = 0;
+        for (int i = e * CATEGORIES; i < (e + 1) * CATEGORIES; i++) {
+            total += this.score[i];
+        }
+        return total;
+    }
+
+    //share of the stored scores of an edge left at now
+    private double decay(int e) {
+        return this.stamp[e] == this.now ? 1 : Math.exp(-this.rate * (this.now - this.stamp[e]));
+    }
+
+    /**
+    * @param e the edge id
+    * @param category the identifier of the category of the crime
+    * @return the decayed number of crimes of that category on the edge
+    */
+    public double score(int e, int category) {
+        return this.score[e * CATEGORIES + category] * this.decay(e);
+    }
+
+    /**
+    * Computes the weight crime adds to the edge from the decayed scores, the
+    * same way EdgeCrimes does from counts while the total score is at least
+    * one, and shrinking linearly to nothing at RETIRED below that.
+    * @param e the edge id
+    * @return the additional weight, nothing if the edge is not active
+    */
+    public double penalty(int e) {
+        if (this.activeIndex[e] < 0) {
+            return 0;
+        }
+        double factor = this.decay(e);
+        double moreWeight = 0;
+        for (int i = 0; i < 8; i++) {
+            moreWeight += EdgeCrimes.categoryWeight(this.score[e * CATEGORIES + i] * factor);
+        }
+        double share = (this.total(e) * factor - RETIRED) / (1 - RETIRED);
+        return moreWeight * Math.max(0, Math.min(1, share));
+    }
+
+    /**
+    * Moves the clock forward. Every active edge decays, and the edges that
+    * faded below RETIRED stop being active.
+    * @param nowMillis the new local time, ignored if earlier than now()
+    * @return the ids of the edges whose penalty changed
+    */
+    public int[] advance(long nowMillis) {
+        if (nowMillis <= this.now) {
+            return new int[0];
+        }
+        this.now = nowMillis;
+        int[] changed = Arrays.copyOf(this.active, this.activeCount);
+        for (int e : changed) {
+            if (this.total(e) * this.decay(e) < RETIRED) {
+                this.retire(e);
+            }
+        }
+        return changed;
+    }
+
+    //removes an edge from the active list by moving the last one into its place
+    private void retire(int e) {
+        int i = this.activeIndex[e];
+        int last = this.active[--this.activeCount];
+        this.active[i] = last;
+        this.activeIndex[last] = i;
+        this.activeIndex[e] = -1;
+    }
+}
@@ -0,0 +1,125 @@
+package graphFiles;
+
+/**
+* Crime counters of every edge of a CompactGraph, kept in flat int arrays
+* indexed by edge id instead of an int[9] inside each EdgeNode.
+*/
+public final class EdgeCrimes {
+
+    /** Number of crime categories, one per leading digit of the UCR code. */
+    public static final int CATEGORIES = 9;
+
+    private final int[] freq;
+    private final int[] incidents;
+
+    /**
+    * Creates empty counters.
+    * @param edgeCount the number of edges of the graph
+    */
+    public EdgeCrimes(int edgeCount) {
+        this.freq = new int[edgeCount * CATEGORIES];
+        this.incidents = new int[edgeCount];
+    }
+
+    /**
+    * Wraps counters read back from storage.
+    * @param freq the counts, CATEGORIES per edge in edge id order
+    */
+    EdgeCrimes(int[] freq) {
+        this.freq = freq;
+        this.incidents = new int[freq.length / CATEGORIES];
+        for (int i = 0; i < freq.length; i++) {
+            this.incidents[i / CATEGORIES] += freq[i];
+        }
+    }
+
+    private EdgeCrimes(EdgeCrimes other) {
+        this.freq = other.freq.clone();
+        this.incidents = other.incidents.clone();
+    }
+
+    /**
+    * @return independent counters holding the same counts
+    */
+    public EdgeCrimes copy() {
+        return new EdgeCrimes(this);
+    }
+
+    /**
+    * Carries the counters over to a graph with more roads, numbered anew.
+    * @param edgeOf the edge id in the new graph of every counted edge
+    * @param edgeCount the number of edges of the new graph
+    * @return the counters under the new edge ids, empty for the roads that are new
+    */
+    EdgeCrimes renumber(int[] edgeOf, int edgeCount) {
+        int[] moved = new int[edgeCount * CATEGORIES];
+        for (int e = 0; e < edgeOf.length; e++) {
+            System.arraycopy(this.freq, e * CATEGORIES, moved, edgeOf[e] * CATEGORIES, CATEGORIES);
+        }
+        return new EdgeCrimes(moved);
+    }
+
+    /**
+    * @return the number of edges counted
+    */
+    public int edgeCount() {
+        return this.incidents.length;
+    }
+
+    /**
+    * Increases the frequency of the crime within a specifc category.
+    * @param e the edge id
+    * @param category the identifier of the category of the crime
+    */
+    public void increment(int e, int category) {
+        this.freq[e * CATEGORIES + category]++;
+        this.incidents[e]++;
+    }
+
+    /**
+    * @param e the edge id
+    * @param category the identifier of the category of the crime
+    * @return the number of crimes of that category on the edge
+    */
+    public int count(int e, int category) {
+        return this.freq[e * CATEGORIES + category];
+    }
+
+    /**
+    * @param e the edge id
+    * @return the number of crimes that occured associated with the edge
+    */
+    public int incidents(int e) {
+        return this.incidents[e];
+    }
+
+    /**
+    * Computes the additional edge weight based on the frequency of each
+    * category of crime, the same way SparseGraph does for its edges.
+    * @param e the edge id
+    * @return the total additional weight
+    */
+    public double addedWeight(int e) {
+        double moreWeight = 0;
+        for (int i = 0; i < 8; i++) {
+            moreWeight += categoryWeight(this.freq[e * CATEGORIES + i]);
+        }
+        return moreWeight;
+    }
+
+    /**
+    * @param count the number of crimes of one category on an edge
+    * @return the weight they add to the edge
+    */
+    static double categoryWeight(double count) {
+        return Math.pow(count + 20, 2);
+    }
+
+    /**
+    * @param e the edge id
+    * @return the weight crime adds to the edge, nothing if no crime was found on it
+    */
+    public double penalty(int e) {
+        return this.incidents[e] == 0 ? 0 : this.addedWeight(e);
+    }
+}
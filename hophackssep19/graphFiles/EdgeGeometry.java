@@ -0,0 +1,326 @@
+package graphFiles;
+
+import java.util.Arrays;
+
+/**
+* Shape of every edge of a CompactGraph: the points a road bends through
+* between its two vertices, as read from the map. Points are quantized to a
+* tenth of a micro degree and stored as the change from the point before
+* them, so a point takes two ints in one contiguous array whatever the size
+* of the map, instead of two boxed coordinates and an object.
+*
+* A road and its reverse share one run of points, which the reverse edge
+* reads backwards. Edges without shape points are straight lines, as every
+* edge of a text map is.
+*/
+public final class EdgeGeometry {
+
+    private static final double EARTH_RADIUS = 6371000.0;
+    // coordinates are stored at a tenth of a micro degree, about a centimeter
+    private static final double SCALE = 1e7;
+
+    private final CompactGraph graph;
+    // run of shape points of edge e, or ~run if the edge walks the run backwards
+    private final int[] run;
+    // points of run r are runStart[r] up to runStart[r + 1], each the change in
+    // quantized longitude and latitude from the point before, the first from the
+    // vertex the run leaves; run 0 is empty
+    private final int[] runStart;
+    private final int[] delta;
+    // meters per degree of longitude and of latitude around the map
+    private final double lonMeters;
+    private final double latMeters;
+
+    /**
+    * @param g the graph whose edges are shaped
+    * @param run the run of every edge, ~run if the edge walks it backwards, owned by the geometry
+    * @param runStart where the points of every run start, run 0 empty, owned by the geometry
+    * @param delta the quantized point changes, owned by the geometry
+    */
+    EdgeGeometry(CompactGraph g, int[] run, int[] runStart, int[] delta) {
+        this.graph = g;
+        this.run = run;
+        this.runStart = runStart;
+        this.delta = delta;
+        double loLat = Double.MAX_VALUE;
+        double hiLat = -Double.MAX_VALUE;
+        for (int v = 0; v < g.vertexCount(); v++) {
+            loLat = Math.min(loLat, g.lat(v));
+            hiLat = Math.max(hiLat, g.lat(v));
+        }
+        this.latMeters = Math.toRadians(1) * EARTH_RADIUS;
+        this.lonMeters = g.vertexCount() == 0 ? this.latMeters
+                                               : this.latMeters * Math.cos(Math.toRadians((loLat + hiLat) / 2));
+    }
+
+    /**
+    * Geometry with every edge a straight line.
+    * @param g the graph
+    * @return the geometry
+    */
+    public static EdgeGeometry straight(CompactGraph g) {
+        return new EdgeGeometry(g, new int[g.edgeCount()], new int[2], new int[0]);
+    }
+
+    /**
+    * Gives every edge of a graph the shape points of the road it was loaded
+    * from. Roads were added in both directions in source order, so an edge is
+    * matched to the first road between its vertices, as the graph kept it.
+    * @param g the graph frozen after the roads were added
+    * @param roads the roads with their shape points
+    * @param vertexOf the vertex id in g of every vertex of the source
+    * @return the geometry
+    */
+    public static EdgeGeometry build(CompactGraph g, RoadSource roads, int[] vertexOf) {
+        return build(g, roads, vertexOf, null);
+    }
+
+    /**
+    * Shapes a graph that grew by the roads of another map. Edges that were
+    * in the graph of this geometry keep their shape, found by their two
+    * vertices, whose ids do not change when roads are added, and the new
+    * edges get the shape points of the roads they were loaded from.
+    * @param g the graph frozen after the roads were added
+    * @param roads the roads added, with their shape points
+    * @param vertexOf the vertex id in g of every vertex of the source
+    * @return the geometry, this one is left as it was
+    */
+    public EdgeGeometry extend(CompactGraph g, RoadSource roads, int[] vertexOf) {
+        return build(g, roads, vertexOf, this);
+    }
+
+    //shapes the edges of g found in before, if given, like there and the others from the roads
+    private static EdgeGeometry build(CompactGraph g, RoadSource roads, int[] vertexOf, EdgeGeometry before) {
+        //every edge already shaped, by its ordered vertex pair
+        LongIntHashMap edgeBefore = new LongIntHashMap(before == null ? 0 : before.graph.edgeCount());
+        for (int e = 0; before != null && e < before.graph.edgeCount(); e++) {
+            edgeBefore.putIfAbsent((long) before.graph.source(e) << 32 | before.graph.target(e), e);
+        }
+
+        //first road between every ordered vertex pair, twice its number plus one if it is reversed
+        LongIntHashMap roadOf = new LongIntHashMap(2 * roads.edgeCount());
+        for (int i = 0; i < roads.edgeCount(); i++) {
+            long f = vertexOf[roads.from(i)];
+            long t = vertexOf[roads.to(i)];
+            roadOf.putIfAbsent(f << 32 | t, 2 * i);
+            roadOf.putIfAbsent(t << 32 | f, 2 * i + 1);
+        }
+
+        //the runs of before come first and keep their numbers
+        int[] runOf = new int[roads.edgeCount()];
+        int runs = before == null ? 1 : before.runStart.length - 1;
+        int size = before == null ? 0 : before.delta.length;
+        int[] runStart = before == null ? new int[16] : Arrays.copyOf(before.runStart, Math.max(16, runs + 1));
+        int[] delta = before == null ? new int[64] : Arrays.copyOf(before.delta, Math.max(64, size));
+        int[] run = new int[g.edgeCount()];
+        for (int e = 0; e < g.edgeCount(); e++) {
+            long key = (long) g.source(e) << 32 | g.target(e);
+            int kept = edgeBefore.get(key);
+            if (kept >= 0) {
+                run[e] = before.run[kept];
+                continue;
+            }
+            int found = roadOf.get(key);
+            if (found < 0) {
+                continue;
+            }
+            int road = found >>> 1;
+            if (runOf[road] == 0 && roads.shapeEnd(road) > roads.shapeStart(road)) {
+                //the road's points, from the vertex it leaves in the source
+                runOf[road] = runs;
+                long x = quantize(roads.lon(roads.from(road)));
+                long y = quantize(roads.lat(roads.from(road)));
+                int points = roads.shapeEnd(road) - roads.shapeStart(road);
+                if (size + 2 * points > delta.length) {
+                    delta = Arrays.copyOf(delta, Math.max(2 * delta.length, size + 2 * points));
+                }
+                for (int k = roads.shapeStart(road); k < roads.shapeEnd(road); k++) {
+                    long nx = quantize(roads.shapeLon(k));
+                    long ny = quantize(roads.shapeLat(k));
+                    delta[size++] = (int) (nx - x);
+                    delta[size++] = (int) (ny - y);
+                    x = nx;
+                    y = ny;
+                }
+                if (runs + 1 == runStart.length) {
+                    runStart = Arrays.copyOf(runStart, runStart.length * 2);
+                }
+                runStart[++runs] = size / 2;
+            }
+            run[e] = (found & 1) == 0 || runOf[road] == 0 ? runOf[road] : ~runOf[road];
+        }
+        return new EdgeGeometry(g, run, Arrays.copyOf(runStart, runs + 1), Arrays.copyOf(delta, size));
+    }
+
+    private static long quantize(double degrees) {
+        return Math.round(degrees * SCALE);
+    }
+
+    /**
+    * @param e the edge id
+    * @return the run of points of the edge, ~run if the edge walks it backwards
+    */
+    int run(int e) {
+        return this.run[e];
+    }
+
+    /**
+    * @return the number of runs of points, run 0 the empty one of straight edges
+    */
+    int runCount() {
+        return this.runStart.length - 1;
+    }
+
+    /**
+    * @param r the run, up to runCount() for the end of the last one
+    * @return the index of the first point of the run
+    */
+    int runStart(int r) {
+        return this.runStart[r];
+    }
+
+    /**
+    * @param i the index of a stored value, twice the point index plus one for latitude
+    * @return the change of the quantized coordinate from the point before
+    */
+    int delta(int i) {
+        return this.delta[i];
+    }
+
+    /**
+    * @return the graph whose edges are shaped
+    */
+    public CompactGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+    * @param e the edge id
+    * @return the number of shape points between the two vertices of the edge
+    */
+    public int pointCount(int e) {
+        int r = this.run[e] < 0 ? ~this.run[e] : this.run[e];
+        return this.runStart[r + 1] - this.runStart[r];
+    }
+
+    /**
+    * @return the number of shape points stored, each road counted once
+    */
+    public int pointCount() {
+        return this.delta.length / 2;
+    }
+
+    /**
+    * Writes the points of an edge, its source vertex first and its target
+    * vertex last, as longitude and latitude pairs.
+    * @param e the edge id
+    * @param out the array to write to, with room for 2 * (pointCount(e) + 2) values from at
+    * @param at the position of the first value to write
+    * @return the position after the last value written
+    */
+    public int line(int e, double[] out, int at) {
+        CompactGraph g = this.graph;
+        boolean reversed = this.run[e] < 0;
+        int r = reversed ? ~this.run[e] : this.run[e];
+        int points = this.runStart[r + 1] - this.runStart[r];
+        out[at] = g.lon(g.source(e));
+        out[at + 1] = g.lat(g.source(e));
+        //a reversed run still decodes from the vertex it left in the source, which is the target here
+        int from = reversed ? g.target(e) : g.source(e);
+        long x = quantize(g.lon(from));
+        long y = quantize(g.lat(from));
+        for (int k = 0; k < points; k++) {
+            x += this.delta[2 * (this.runStart[r] + k)];
+            y += this.delta[2 * (this.runStart[r] + k) + 1];
+            int slot = at + 2 * (reversed ? points - k : k + 1);
+            out[slot] = x / SCALE;
+            out[slot + 1] = y / SCALE;
+        }
+        at += 2 * (points + 1);
+        out[at] = g.lon(g.target(e));
+        out[at + 1] = g.lat(g.target(e));
+        return at + 2;
+    }
+
+    /**
+    * @param e the edge id
+    * @return the points of the edge from source to target as longitude and latitude pairs
+    */
+    public double[] line(int e) {
+        double[] out = new double[2 * (this.pointCount(e) + 2)];
+        this.line(e, out, 0);
+        return out;
+    }
+
+    /**
+    * Assembles the line a route follows on the map, every vertex and shape
+    * point once, from the start to the end.
+    * @param route the route, found on this geometry's graph or one reweighted from it
+    * @return the points as longitude and latitude pairs, empty for an empty route
+    */
+    public double[] line(Route route) {
+        if (route.size() == 0) {
+            return new double[0];
+        }
+        int points = 1;
+        for (int i = 0; i < route.size(); i++) {
+            points += this.pointCount(route.edge(i)) + 1;
+        }
+        double[] out = new double[2 * points];
+        int at = 0;
+        for (int i = 0; i < route.size(); i++) {
+            //each edge starts where the one before ended, so that vertex is written over
+            at = this.line(route.edge(i), out, Math.max(0, at - 2));
+        }
+        return out;
+    }
+
+    /**
+    * Distance from a point to the shape of an edge.
+    * @param e the edge id
+    * @param lon the longitude of the point
+    * @param lat the latitude of the point
+    * @return the distance in meters
+    */
+    public double distance(int e, double lon, double lat) {
+        CompactGraph g = this.graph;
+        int r = this.run[e] < 0 ? ~this.run[e] : this.run[e];
+        //the distance does not depend on direction, so the run is walked as stored
+        int from = this.run[e] < 0 ? g.target(e) : g.source(e);
+        int to = this.run[e] < 0 ? g.source(e) : g.target(e);
+        long x = quantize(g.lon(from));
+        long y = quantize(g.lat(from));
+        //works in meters relative to the start of the run
+        double px = (lon - g.lon(from)) * this.lonMeters;
+        double py = (lat - g.lat(from)) * this.latMeters;
+        double ax = 0;
+        double ay = 0;
+        double best = Double.MAX_VALUE;
+        for (int k = 2 * this.runStart[r]; k < 2 * this.runStart[r + 1]; k += 2) {
+            x += this.delta[k];
+            y += this.delta[k + 1];
+            double bx = (x / SCALE - g.lon(from)) * this.lonMeters;
+            double by = (y / SCALE - g.lat(from)) * this.latMeters;
+            best = Math.min(best, segment(ax, ay, bx, by, px, py));
+            ax = bx;
+            ay = by;
+        }
+        double bx = (g.lon(to) - g.lon(from)) * this.lonMeters;
+        double by = (g.lat(to) - g.lat(from)) * this.latMeters;
+        return Math.min(best, segment(ax, ay, bx, by, px, py));
+    }
+
+    //distance from p to the segment from a to b
+    private static double segment(double ax, double ay, double bx, double by, double px, double py) {
+        double sx = bx - ax;
+        double sy = by - ay;
+        double qx = px - ax;
+        double qy = py - ay;
+        double lengthSq = sx * sx + sy * sy;
+        double t = lengthSq == 0 ? 0 : (qx * sx + qy * sy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        double dx = qx - t * sx;
+        double dy = qy - t * sy;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
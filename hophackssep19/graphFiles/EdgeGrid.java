@@ -0,0 +1,193 @@
+package graphFiles;
+
+/**
+* Uniform longitude/latitude grid over the edges of a CompactGraph.
+* Every edge is filed under each cell its bounding box touches, so a nearest edge
+* query only measures the edges in the cells around the query point, ring by ring,
+* until no unvisited cell can hold anything closer. Edges are measured along their
+* shape when the grid is given one, otherwise as straight lines.
+*/
+public final class EdgeGrid {
+
+    private static final double EARTH_RADIUS = 6371000.0;
+
+    private final CompactGraph graph;
+    private final EdgeGeometry shape;
+    private final double cellSize;
+    private final double minLon;
+    private final double minLat;
+    private final int columns;
+    private final int rows;
+    private final int[] cellOffset;
+    private final int[] cellEdges;
+    // meters per degree of longitude and of latitude around the map
+    private final double lonMeters;
+    private final double latMeters;
+
+    /**
+    * Builds the grid over straight edges.
+    * @param g the graph whose edges are indexed
+    * @param cellSize the width and height of a cell in degrees
+    */
+    public EdgeGrid(CompactGraph g, double cellSize) {
+        this(EdgeGeometry.straight(g), cellSize);
+    }
+
+    /**
+    * Builds the grid over the shapes of the edges.
+    * @param shape the graph whose edges are indexed, with their shapes
+    * @param cellSize the width and height of a cell in degrees
+    */
+    public EdgeGrid(EdgeGeometry shape, double cellSize) {
+        CompactGraph g = shape.getGraph();
+        this.graph = g;
+        this.shape = shape;
+        this.cellSize = cellSize;
+
+        double loLon = Double.MAX_VALUE;
+        double loLat = Double.MAX_VALUE;
+        double hiLon = -Double.MAX_VALUE;
+        double hiLat = -Double.MAX_VALUE;
+        for (int v = 0; v < g.vertexCount(); v++) {
+            loLon = Math.min(loLon, g.lon(v));
+            loLat = Math.min(loLat, g.lat(v));
+            hiLon = Math.max(hiLon, g.lon(v));
+            hiLat = Math.max(hiLat, g.lat(v));
+        }
+        if (g.vertexCount() == 0) {
+            loLon = 0;
+            loLat = 0;
+            hiLon = 0;
+            hiLat = 0;
+        }
+        this.minLon = loLon;
+        this.minLat = loLat;
+        this.columns = (int) ((hiLon - loLon) / cellSize) + 1;
+        this.rows = (int) ((hiLat - loLat) / cellSize) + 1;
+        this.latMeters = Math.toRadians(1) * EARTH_RADIUS;
+        this.lonMeters = this.latMeters * Math.cos(Math.toRadians((loLat + hiLat) / 2));
+
+        //counts the edges per cell, then fills the cells in a second pass
+        this.cellOffset = new int[this.columns * this.rows + 1];
+        double[] line = new double[4];
+        for (int e = 0; e < g.edgeCount(); e++) {
+            line = this.forCells(e, line, null);
+        }
+        for (int c = 0; c < this.columns * this.rows; c++) {
+            this.cellOffset[c + 1] += this.cellOffset[c];
+        }
+        this.cellEdges = new int[this.cellOffset[this.columns * this.rows]];
+        int[] next = new int[this.columns * this.rows];
+        System.arraycopy(this.cellOffset, 0, next, 0, next.length);
+        for (int e = 0; e < g.edgeCount(); e++) {
+            line = this.forCells(e, line, next);
+        }
+    }
+
+    //counts the edge in every cell its box touches, or files it when next is given;
+    //the points of the edge are written to line, which is returned grown if it was too small
+    private double[] forCells(int e, double[] line, int[] next) {
+        int size = 2 * (this.shape.pointCount(e) + 2);
+        if (size > line.length) {
+            line = new double[size];
+        }
+        this.shape.line(e, line, 0);
+        double loLon = Double.MAX_VALUE;
+        double loLat = Double.MAX_VALUE;
+        double hiLon = -Double.MAX_VALUE;
+        double hiLat = -Double.MAX_VALUE;
+        for (int i = 0; i < size; i += 2) {
+            loLon = Math.min(loLon, line[i]);
+            hiLon = Math.max(hiLon, line[i]);
+            loLat = Math.min(loLat, line[i + 1]);
+            hiLat = Math.max(hiLat, line[i + 1]);
+        }
+        int c0 = this.column(loLon);
+        int c1 = this.column(hiLon);
+        int r0 = this.row(loLat);
+        int r1 = this.row(hiLat);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * this.columns + c;
+                if (next == null) {
+                    this.cellOffset[cell + 1]++;
+                } else {
+                    this.cellEdges[next[cell]++] = e;
+                }
+            }
+        }
+        return line;
+    }
+
+    private int column(double lon) {
+        int c = (int) Math.floor((lon - this.minLon) / this.cellSize);
+        return Math.max(0, Math.min(this.columns - 1, c));
+    }
+
+    private int row(double lat) {
+        int r = (int) Math.floor((lat - this.minLat) / this.cellSize);
+        return Math.max(0, Math.min(this.rows - 1, r));
+    }
+
+    /**
+    * @return the graph whose edges are indexed
+    */
+    public CompactGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+    * Distance from a point to the shape of an edge.
+    * @param e the edge id
+    * @param lon the longitude of the point
+    * @param lat the latitude of the point
+    * @return the distance in meters
+    */
+    public double distance(int e, double lon, double lat) {
+        return this.shape.distance(e, lon, lat);
+    }
+
+    /**
+    * Finds the edge closest to a point. Ties go to the lowest edge id.
+    * @param lon the longitude of the point
+    * @param lat the latitude of the point
+    * @return the closest edge id, or -1 if the graph has no edges
+    */
+    public int nearestEdge(double lon, double lat) {
+        int col = this.column(lon);
+        int row = this.row(lat);
+        double ring = this.cellSize * Math.min(this.lonMeters, this.latMeters);
+        int maxRing = Math.max(this.columns, this.rows);
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+
+        for (int k = 0; k <= maxRing; k++) {
+            for (int r = row - k; r <= row + k; r++) {
+                if (r < 0 || r >= this.rows) {
+                    continue;
+                }
+                //only the border of the ring is new, its inside was searched already
+                int step = (r == row - k || r == row + k) ? 1 : Math.max(1, 2 * k);
+                for (int c = col - k; c <= col + k; c += step) {
+                    if (c < 0 || c >= this.columns) {
+                        continue;
+                    }
+                    int cell = r * this.columns + c;
+                    for (int i = this.cellOffset[cell]; i < this.cellOffset[cell + 1]; i++) {
+                        int e = this.cellEdges[i];
+                        double d = this.distance(e, lon, lat);
+                        if (d < bestDistance || (d == bestDistance && e < best)) {
+                            bestDistance = d;
+                            best = e;
+                        }
+                    }
+                }
+            }
+            //every cell further out is at least k cells away from the query cell
+            if (best >= 0 && bestDistance <= k * ring) {
+                break;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,364 @@
+package graphFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+* Streaming reader for text maps with one road per line:
+* "lon,lat lon,lat weight name". The file is read through a FileChannel in
+* fixed size chunks and parsed byte by byte, so numbers go straight into
+* primitive arrays and only a new vertex or a new street name allocates a String.
+* Vertices are interned by their coordinates packed into a long.
+* Malformed lines are reported with their line number and skipped.
+*/
+public final class EdgeListReader implements RoadSource {
+
+    private static final int CHUNK = 1 << 16;
+    // coordinates are compared at a tenth of a micro degree, about a centimeter
+    private static final double KEY_SCALE = 1e7;
+    private static final double[] POWERS = new double[23];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private final LongIntHashMap vertexIds = new LongIntHashMap(1024);
+    private final Map<String, String> names = new HashMap<>();
+    // start and end of each of the four fields of the current line
+    private final int[] cut = new int[8];
+    private final String file;
+    private double[] lon = new double[1024];
+    private double[] lat = new double[1024];
+    private String[] vertexName = new String[1024];
+    private int vertexCount = 0;
+    private int[] from = new int[1024];
+    private int[] to = new int[1024];
+    private double[] weight = new double[1024];
+    private String[] name = new String[1024];
+    private int edgeCount = 0;
+    private int lineNumber = 0;
+    private int skipped = 0;
+
+    /**
+    * Reads a whole map file.
+    * @param file the map file
+    * @throws IOException if the file can not be read
+    */
+    public EdgeListReader(String file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(buf) < 0;
+                byte[] bytes = buf.array();
+                int end = buf.position();
+                int lineStart = 0;
+                for (int i = 0; i < end; i++) {
+                    if (bytes[i] == '\n') {
+                        this.parseLine(bytes, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                if (eof) {
+                    if (lineStart < end) {
+                        this.parseLine(bytes, lineStart, end);
+                    }
+                } else if (lineStart == 0 && end == bytes.length) {
+                    //a single line longer than the buffer
+                    buf = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length * 2));
+                    buf.position(end);
+                } else {
+                    //keeps the unfinished line at the front of the buffer
+                    buf.limit(end);
+                    buf.position(lineStart);
+                    buf.compact();
+                }
+            }
+        }
+    }
+
+    //parses one line of bytes from start up to end, without the newline
+    private void parseLine(byte[] b, int start, int end) {
+        this.lineNumber++;
+        if (end > start && b[end - 1] == '\r') {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+
+        int[] cut = this.cut;
+        int tokens = 0;
+        int i = start;
+        while (i < end && tokens < 4) {
+            while (i < end && (b[i] == ' ' || b[i] == '\t')) {
+                i++;
+            }
+            if (i == end) {
+                break;
+            }
+            cut[2 * tokens] = i;
+            while (i < end && b[i] != ' ' && b[i] != '\t') {
+                i++;
+            }
+            cut[2 * tokens + 1] = i;
+            tokens++;
+        }
+        if (tokens < 4) {
+            this.skip("expected 4 fields but found " + tokens);
+            return;
+        }
+
+        int f = this.vertex(b, cut[0], cut[1]);
+        int t = f < 0 ? -1 : this.vertex(b, cut[2], cut[3]);
+        double w = parseDouble(b, cut[4], cut[5]);
+        if (f < 0 || t < 0) {
+            this.skip("coordinates must be a Longitude,Latitude pair");
+            return;
+        }
+        if (Double.isNaN(w)) {
+            this.skip("weight is not a number");
+            return;
+        }
+
+        if (this.edgeCount == this.from.length) {
+            int size = this.from.length * 2;
+            this.from = Arrays.copyOf(this.from, size);
+            this.to = Arrays.copyOf(this.to, size);
+            this.weight = Arrays.copyOf(this.weight, size);
+            this.name = Arrays.copyOf(this.name, size);
+        }
+        String edgeName = new String(b, cut[6], cut[7] - cut[6], StandardCharsets.UTF_8);
+        String shared = this.names.putIfAbsent(edgeName, edgeName);
+        this.from[this.edgeCount] = f;
+        this.to[this.edgeCount] = t;
+        this.weight[this.edgeCount] = w;
+        this.name[this.edgeCount] = shared == null ? edgeName : shared;
+        this.edgeCount++;
+    }
+
+    //finds or adds the vertex written between start and end, -1 if it is malformed
+    private int vertex(byte[] b, int start, int end) {
+        int comma = start;
+        while (comma < end && b[comma] != ',') {
+            comma++;
+        }
+        if (comma == end) {
+            return -1;
+        }
+        double lo = parseDouble(b, start, comma);
+        double la = parseDouble(b, comma + 1, end);
+        if (Double.isNaN(lo) || Double.isNaN(la)) {
+            return -1;
+        }
+
+        long key = (Math.round(lo * KEY_SCALE) << 32) ^ (Math.round(la * KEY_SCALE) & 0xFFFFFFFFL);
+        int id = this.vertexIds.putIfAbsent(key, this.vertexCount);
+        if (id >= 0) {
+            return id;
+        }
+        if (this.vertexCount == this.lon.length) {
+            int size = this.lon.length * 2;
+            this.lon = Arrays.copyOf(this.lon, size);
+            this.lat = Arrays.copyOf(this.lat, size);
+            this.vertexName = Arrays.copyOf(this.vertexName, size);
+        }
+        this.lon[this.vertexCount] = lo;
+        this.lat[this.vertexCount] = la;
+        this.vertexName[this.vertexCount] = new String(b, start, end - start, StandardCharsets.US_ASCII);
+        return this.vertexCount++;
+    }
+
+    private void skip(String reason) {
+        this.skipped++;
+        System.err.println(this.file + ":" + this.lineNumber + ": skipping road, " + reason);
+    }
+
+    /**
+    * Parses a decimal number such as -76.6063 without creating a String.
+    * Numbers with up to 15 significant digits are exact, longer ones fall back
+    * to Double.parseDouble.
+    * @param b the bytes holding the number
+    * @param start the first byte of the number
+    * @param end one past the last byte of the number
+    * @return the number, or NaN if the bytes are not a number
+    */
+    static double parseDouble(byte[] b, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (b[i] == '-' || b[i] == '+')) {
+            negative = b[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean point = false;
+        boolean any = false;
+        for (; i < end; i++) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                if (digits >= 15) {
+                    return slowParse(b, start, end);
+                }
+                any = true;
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (point) {
+                    decimals++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if (c == 'e' || c == 'E') {
+                return slowParse(b, start, end);
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!any) {
+            return Double.NaN;
+        }
+        if (decimals >= POWERS.length) {
+            return slowParse(b, start, end);
+        }
+        //both operands are exact doubles, so the one division rounds correctly
+        double value = mantissa / POWERS[decimals];
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(byte[] b, int start, int end) {
+        try {
+            return Double.parseDouble(new String(b, start, end - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+    * @return the number of distinct vertices read
+    */
+    @Override
+    public int vertexCount() {
+        return this.vertexCount;
+    }
+
+    /**
+    * @param v the vertex id, in order of first appearance
+    * @return the coordinates of the vertex as written in the file
+    */
+    @Override
+    public String vertexName(int v) {
+        return this.vertexName[v];
+    }
+
+    /**
+    * @param v the vertex id
+    * @return the longitude of the vertex
+    */
+    @Override
+    public double lon(int v) {
+        return this.lon[v];
+    }
+
+    /**
+    * @param v the vertex id
+    * @return the latitude of the vertex
+    */
+    @Override
+    public double lat(int v) {
+        return this.lat[v];
+    }
+
+    /**
+    * @return the number of roads read
+    */
+    @Override
+    public int edgeCount() {
+        return this.edgeCount;
+    }
+
+    /**
+    * @param e the road number, in file order
+    * @return the vertex id the road starts at
+    */
+    @Override
+    public int from(int e) {
+        return this.from[e];
+    }
+
+    /**
+    * @param e the road number
+    * @return the vertex id the road ends at
+    */
+    @Override
+    public int to(int e) {
+        return this.to[e];
+    }
+
+    /**
+    * @param e the road number
+    * @return the weight of the road
+    */
+    @Override
+    public double weight(int e) {
+        return this.weight[e];
+    }
+
+    /**
+    * @param e the road number
+    * @return the name of the road
+    */
+    @Override
+    public String name(int e) {
+        return this.name[e];
+    }
+
+    /**
+    * Text maps have no shape points, every road is straight.
+    * @param e the road number
+    * @return 0
+    */
+    @Override
+    public int shapeStart(int e) {
+        return 0;
+    }
+
+    /**
+    * @param e the road number
+    * @return 0
+    */
+    @Override
+    public int shapeEnd(int e) {
+        return 0;
+    }
+
+    @Override
+    public double shapeLon(int i) {
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public double shapeLat(int i) {
+        throw new IndexOutOfBoundsException();
+    }
+
+    /**
+    * @return the number of malformed lines that were skipped
+    */
+    public int skipped() {
+        return this.skipped;
+    }
+}
@@ -0,0 +1,341 @@
+package graphFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+* Binary snapshot of a loaded map: coordinates, CSR adjacency, the weights
+* without crime, a table of edge names, the crime counters and the shape
+* points of the roads as EdgeGeometry stores them. The file is
+* memory mapped and copied into the arrays in bulk, so loading parses nothing.
+* Each process still holds its own copy of the arrays on the heap.
+*
+* Layout, little endian: magic, version, vertex count n, edge count m, name count,
+* name bytes, run count, shape point count, then lon[n], lat[n], outOffset[n + 1],
+* target[m], source[m], weight[m], inOffset[n + 1], inEdge[m], origin[m],
+* crimes[m * 9], nameIndex[m], nameOffset[names + 1], the UTF-8 bytes of the
+* names, run[m], runStart[runs + 1] and delta[points * 2].
+*/
+public final class GraphSnapshot {
+
+    private static final int MAGIC = 0x31474A53;
+    private static final int VERSION = 3;
+    private static final int HEADER = 8 * 4;
+
+    private final CompactGraph graph;
+    private final EdgeCrimes crimes;
+    private final EdgeGeometry geometry;
+
+    /**
+    * @param g the graph to store, weighted without crime
+    * @param c the crime counters of the graph's edges
+    */
+    public GraphSnapshot(CompactGraph g, EdgeCrimes c) {
+        this(g, c, EdgeGeometry.straight(g));
+    }
+
+    /**
+    * @param g the graph to store, weighted without crime
+    * @param c the crime counters of the graph's edges
+    * @param shape the shapes of the graph's edges
+    * @throws IllegalArgumentException if the counters or shapes belong to other edges
+    */
+    public GraphSnapshot(CompactGraph g, EdgeCrimes c, EdgeGeometry shape) {
+        if (c.edgeCount() != g.edgeCount() || shape.getGraph().edgeCount() != g.edgeCount()) {
+            throw new IllegalArgumentException();
+        }
+        this.graph = g;
+        this.crimes = c;
+        this.geometry = shape;
+    }
+
+    /**
+    * @return the stored graph
+    */
+    public CompactGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+    * @return the stored crime counters
+    */
+    public EdgeCrimes getCrimes() {
+        return this.crimes;
+    }
+
+    /**
+    * @return the stored shapes of the edges
+    */
+    public EdgeGeometry getGeometry() {
+        return this.geometry;
+    }
+
+    /**
+    * Checks whether a file starts like a snapshot.
+    * @param file the file to check
+    * @return true if the file is a snapshot
+    * @throws IOException if the file can not be read
+    */
+    public static boolean isSnapshot(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && channel.read(head) >= 0) {
+                continue;
+            }
+            return !head.hasRemaining() && head.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+    * Writes the snapshot, replacing the file if it exists.
+    * @param file the file to write
+    * @throws IOException if the file can not be written
+    */
+    public void write(String file) throws IOException {
+        CompactGraph g = this.graph;
+        int n = g.vertexCount();
+        int m = g.edgeCount();
+
+        //stores every distinct street name once
+        Map<String, Integer> table = new HashMap<>();
+        int[] nameIndex = new int[m];
+        byte[][] names = new byte[m][];
+        long nameBytes = 0;
+        for (int e = 0; e < m; e++) {
+            Integer index = table.get(g.name(e));
+            if (index == null) {
+                index = table.size();
+                table.put(g.name(e), index);
+                names[index] = g.name(e).getBytes(StandardCharsets.UTF_8);
+                nameBytes += names[index].length;
+            }
+            nameIndex[e] = index;
+        }
+        int nameCount = table.size();
+        EdgeGeometry shape = this.geometry;
+        int runs = shape.runCount();
+        int points = shape.pointCount();
+
+        long size = size(n, m, nameCount, nameBytes, runs, points);
+        //the whole file is assembled in one buffer, which an int indexes
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The map is too large for a snapshot, it would take " + size + " bytes");
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(nameCount).putInt((int) nameBytes)
+           .putInt(runs).putInt(points);
+        for (int v = 0; v < n; v++) {
+            buf.putDouble(g.lon(v));
+        }
+        for (int v = 0; v < n; v++) {
+            buf.putDouble(g.lat(v));
+        }
+        for (int v = 0; v <= n; v++) {
+            buf.putInt(v < n ? g.outStart(v) : m);
+        }
+        for (int e = 0; e < m; e++) {
+            buf.putInt(g.target(e));
+        }
+        for (int e = 0; e < m; e++) {
+            buf.putInt(g.source(e));
+        }
+        for (int e = 0; e < m; e++) {
+            buf.putDouble(g.weight(e));
+        }
+        for (int v = 0; v <= n; v++) {
+            buf.putInt(v < n ? g.inStart(v) : m);
+        }
+        for (int slot = 0; slot < m; slot++) {
+            buf.putInt(g.inEdge(slot));
+        }
+        for (int e = 0; e < m; e++) {
+            buf.putInt(g.origin(e));
+        }
+        for (int e = 0; e < m; e++) {
+            for (int c = 0; c < EdgeCrimes.CATEGORIES; c++) {
+                buf.putInt(this.crimes.count(e, c));
+            }
+        }
+        for (int e = 0; e < m; e++) {
+            buf.putInt(nameIndex[e]);
+        }
+        int offset = 0;
+        for (int i = 0; i < nameCount; i++) {
+            buf.putInt(offset);
+            offset += names[i].length;
+        }
+        buf.putInt(offset);
+        for (int i = 0; i < nameCount; i++) {
+            buf.put(names[i]);
+        }
+        for (int e = 0; e < m; e++) {
+            buf.putInt(shape.run(e));
+        }
+        for (int r = 0; r <= runs; r++) {
+            buf.putInt(shape.runStart(r));
+        }
+        for (int i = 0; i < 2 * points; i++) {
+            buf.putInt(shape.delta(i));
+        }
+        buf.flip();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    /**
+    * Maps a snapshot file and copies it into a graph, its crime counters and its shapes.
+    * @param file the file to read
+    * @return the snapshot
+    * @throws IOException if the file can not be read or is not a snapshot
+    */
+    public static GraphSnapshot read(String file) throws IOException {
+        Path path = Paths.get(file);
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buf = map.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < HEADER || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException(file + " is not a map snapshot");
+        }
+        int n = buf.getInt();
+        int m = buf.getInt();
+        int nameCount = buf.getInt();
+        int nameBytes = buf.getInt();
+        int runs = buf.getInt();
+        int points = buf.getInt();
+        //the counts must describe exactly the bytes that follow before anything is allocated
+        if (n < 0 || m < 0 || nameCount < 0 || nameBytes < 0 || runs < 1 || points < 0
+            || size(n, m, nameCount, nameBytes, runs, points) != HEADER + buf.remaining()) {
+            throw new IOException(file + " is truncated or corrupt");
+        }
+
+        double[] lon = doubles(buf, n);
+        double[] lat = doubles(buf, n);
+        int[] outOffset = ints(buf, n + 1);
+        int[] target = ints(buf, m);
+        int[] source = ints(buf, m);
+        double[] weight = doubles(buf, m);
+        int[] inOffset = ints(buf, n + 1);
+        int[] inEdge = ints(buf, m);
+        int[] origin = ints(buf, m);
+        int[] freq = ints(buf, m * EdgeCrimes.CATEGORIES);
+        int[] nameIndex = ints(buf, m);
+        int[] nameOffset = ints(buf, nameCount + 1);
+        byte[] bytes = new byte[nameBytes];
+        buf.get(bytes);
+        int[] run = ints(buf, m);
+        int[] runStart = ints(buf, runs + 1);
+        int[] delta = ints(buf, 2 * points);
+        if (!offsets(outOffset, m) || !offsets(inOffset, m) || !offsets(nameOffset, nameBytes)
+            || !below(target, n) || !below(source, n) || !below(inEdge, m) || !below(origin, m)
+            || !below(nameIndex, nameCount)
+            || !offsets(runStart, points) || runStart[1] != 0 || !runs(run, runs)) {
+            throw new IOException(file + " is truncated or corrupt");
+        }
+
+        String[] table = new String[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            table[i] = new String(bytes, nameOffset[i], nameOffset[i + 1] - nameOffset[i],
+                                  StandardCharsets.UTF_8);
+        }
+        String[] name = new String[m];
+        for (int e = 0; e < m; e++) {
+            name[e] = table[nameIndex[e]];
+        }
+
+        CompactGraph g = new CompactGraph(outOffset, target, source, weight, inOffset, inEdge,
+                                          lon, lat, name, origin);
+        return new GraphSnapshot(g, new EdgeCrimes(freq), new EdgeGeometry(g, run, runStart, delta));
+    }
+
+    //bytes of a snapshot with the given counts
+    private static long size(long n, long m, long nameCount, long nameBytes, long runs, long points) {
+        return HEADER + 16L * n + 4L * (2 * n + 2) + 4L * 5 * m + 8L * m
+               + 4L * EdgeCrimes.CATEGORIES * m + 4L * (nameCount + 1) + nameBytes
+               + 4L * m + 4L * (runs + 1) + 8L * points;
+    }
+
+    //true if every edge names a run, straight edges never backwards
+    private static boolean runs(int[] run, int runs) {
+        for (int r : run) {
+            if (r >= runs || r < -runs || r == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //true if the offsets start at 0, never decrease and end at the total
+    private static boolean offsets(int[] offset, int total) {
+        if (offset[0] != 0 || offset[offset.length - 1] != total) {
+            return false;
+        }
+        for (int i = 1; i < offset.length; i++) {
+            if (offset[i] < offset[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //true if every value is an index below the bound
+    static boolean below(int[] values, int bound) {
+        for (int value : values) {
+            if (value < 0 || value >= bound) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //bulk copies the next count ints out of the buffer
+    static int[] ints(ByteBuffer buf, int count) {
+        int[] values = new int[count];
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * count);
+        return values;
+    }
+
+    //bulk copies the next count doubles out of the buffer
+    static double[] doubles(ByteBuffer buf, int count) {
+        double[] values = new double[count];
+        buf.asDoubleBuffer().get(values);
+        buf.position(buf.position() + 8 * count);
+        return values;
+    }
+
+    /**
+    * Converts a text map into a snapshot.
+    * @param args the text map file and the snapshot file to write
+    */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Map Name and Snapshot Name must be supplied");
+            return;
+        }
+        try {
+            StreetSearch search = new StreetSearch();
+            search.loadData(args[0]);
+            search.saveSnapshot(args[1]);
+            System.out.println("Wrote " + Files.size(Paths.get(args[1])) + " bytes to " + args[1]);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
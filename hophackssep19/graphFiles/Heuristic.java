@@ -0,0 +1,15 @@
+package graphFiles;
+
+/**
+* Estimate that guides A*: a lower bound on the weight of every path between
+* two vertices. Routes stay optimal as long as the bound never overshoots.
+*/
+public interface Heuristic {
+
+    /**
+    * @param v the vertex the path leaves from
+    * @param target the vertex the path goes to
+    * @return a weight no larger than that of any path from v to target
+    */
+    double lowerBound(int v, int target);
+}
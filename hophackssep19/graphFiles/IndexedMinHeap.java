@@ -0,0 +1,180 @@
+package graphFiles;
+
+/**
+* Binary min heap of int ids keyed by doubles, with decrease-key.
+* Every id below the capacity has a fixed slot in the position and key arrays,
+* so pushing, lowering and polling never allocate.
+*/
+public final class IndexedMinHeap {
+
+    private final int[] heap;
+    private final int[] pos;
+    private final double[] key;
+    private int size;
+
+    /**
+    * Creates an empty heap for the ids 0 to capacity - 1.
+    * @param capacity the number of ids the heap can hold
+    */
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.pos = new int[capacity];
+        this.key = new double[capacity];
+        this.size = 0;
+        for (int i = 0; i < capacity; i++) {
+            this.pos[i] = -1;
+        }
+    }
+
+    /**
+    * @return the number of ids the heap can hold
+    */
+    public int capacity() {
+        return this.pos.length;
+    }
+
+    /**
+    * @return the number of ids in the heap
+    */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+    * @return true if the heap holds no ids
+    */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+    * @param id the id to look for
+    * @return true if the id is in the heap
+    */
+    public boolean contains(int id) {
+        return this.pos[id] >= 0;
+    }
+
+    /**
+    * @return the id with the smallest key, the heap must not be empty
+    */
+    public int peek() {
+        return this.heap[0];
+    }
+
+    /**
+    * @return the smallest key, the heap must not be empty
+    */
+    public double peekKey() {
+        return this.key[this.heap[0]];
+    }
+
+    /**
+    * @param id an id in the heap
+    * @return the current key of the id
+    */
+    public double key(int id) {
+        return this.key[id];
+    }
+
+    /**
+    * Inserts the id, or lowers its key if it is already in the heap.
+    * A key that is not lower than the current one is ignored.
+    * @param id the id to insert
+    * @param k the key of the id
+    */
+    public void push(int id, double k) {
+        int i = this.pos[id];
+        if (i < 0) {
+            i = this.size++;
+            this.heap[i] = id;
+            this.pos[id] = i;
+        } else if (k >= this.key[id]) {
+            return;
+        }
+        this.key[id] = k;
+        this.siftUp(i);
+    }
+
+    /**
+    * Inserts the id, or moves it to its new key whether that is lower or higher.
+    * @param id the id to insert
+    * @param k the key of the id
+    */
+    public void update(int id, double k) {
+        int i = this.pos[id];
+        if (i < 0 || k < this.key[id]) {
+            this.push(id, k);
+        } else {
+            this.key[id] = k;
+            this.siftDown(i);
+        }
+    }
+
+    /**
+    * Removes the id with the smallest key.
+    * @return the removed id, the heap must not be empty
+    */
+    public int poll() {
+        int top = this.heap[0];
+        this.pos[top] = -1;
+        this.size--;
+        if (this.size > 0) {
+            int last = this.heap[this.size];
+            this.heap[0] = last;
+            this.pos[last] = 0;
+            this.siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+    * Empties the heap, touching only the ids still in it.
+    */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.pos[this.heap[i]] = -1;
+        }
+        this.size = 0;
+    }
+
+    private void siftUp(int i) {
+        int id = this.heap[i];
+        double k = this.key[id];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = this.heap[parent];
+            if (this.key[p] <= k) {
+                break;
+            }
+            this.heap[i] = p;
+            this.pos[p] = i;
+            i = parent;
+        }
+        this.heap[i] = id;
+        this.pos[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = this.heap[i];
+        double k = this.key[id];
+        int half = this.size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int c = this.heap[child];
+            int right = child + 1;
+            if (right < this.size && this.key[this.heap[right]] < this.key[c]) {
+                child = right;
+                c = this.heap[child];
+            }
+            if (k <= this.key[c]) {
+                break;
+            }
+            this.heap[i] = c;
+            this.pos[c] = i;
+            i = child;
+        }
+        this.heap[i] = id;
+        this.pos[id] = i;
+    }
+}
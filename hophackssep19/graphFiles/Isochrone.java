@@ -0,0 +1,137 @@
+package graphFiles;
+
+import java.util.Arrays;
+
+/**
+* Immutable result of one isochrone query: every road that can be reached
+* from a start within a weight budget, and how much of it. A road whose far
+* end is out of budget is reached only part of the way, from its start.
+*/
+public final class Isochrone {
+
+    private final CompactGraph graph;
+    private final int start;
+    private final double budget;
+    private final int[] edges;
+    private final double[] fraction;
+    private final int settled;
+
+    /**
+    * @param g the graph searched
+    * @param start the vertex the search started from
+    * @param budget the largest path weight allowed
+    * @param edges the edge ids reached, owned by the result
+    * @param fraction the share of each edge within the budget, owned by the result
+    * @param settled the number of vertices the search settled
+    */
+    Isochrone(CompactGraph g, int start, double budget, int[] edges, double[] fraction, int settled) {
+        this.graph = g;
+        this.start = start;
+        this.budget = budget;
+        this.edges = edges;
+        this.fraction = fraction;
+        this.settled = settled;
+    }
+
+    /**
+    * @return the vertex the search started from
+    */
+    public int start() {
+        return this.start;
+    }
+
+    /**
+    * @return the largest path weight allowed
+    */
+    public double budget() {
+        return this.budget;
+    }
+
+    /**
+    * @return the number of edges reached, in full or in part
+    */
+    public int size() {
+        return this.edges.length;
+    }
+
+    /**
+    * @param i the position in the result
+    * @return the edge id
+    */
+    public int edge(int i) {
+        return this.edges[i];
+    }
+
+    /**
+    * @param i the position in the result
+    * @return the share of the edge reachable from its source, 1 if all of it is
+    */
+    public double fraction(int i) {
+        return this.fraction[i];
+    }
+
+    /**
+    * @return the number of vertices the search settled
+    */
+    public int settled() {
+        return this.settled;
+    }
+
+    /**
+    * Lists the cells of a longitude/latitude grid the reachable part of the
+    * roads passes through, following the shape of each road.
+    * @param shape the shapes of the roads of the graph searched
+    * @param cellSize the width and height of a cell in degrees
+    * @return the south west corner of every cell as longitude and latitude pairs
+    * @throws IllegalArgumentException if the shapes belong to another map or the size is not positive
+    */
+    public double[] cells(EdgeGeometry shape, double cellSize) {
+        if (shape.getGraph().edgeCount() != this.graph.edgeCount() || !(cellSize > 0)) {
+            throw new IllegalArgumentException();
+        }
+        LongIntHashMap seen = new LongIntHashMap(64);
+        long[] cell = new long[64];
+        int count = 0;
+        double[] line = new double[4];
+        double cosLat = Math.cos(Math.toRadians(this.graph.lat(this.start)));
+        //points are taken often enough along each segment that no cell it crosses is stepped over
+        double step = cellSize / 4;
+        for (int i = 0; i < this.edges.length; i++) {
+            int size = 2 * (shape.pointCount(this.edges[i]) + 2);
+            if (size > line.length) {
+                line = new double[size];
+            }
+            shape.line(this.edges[i], line, 0);
+            double total = 0;
+            for (int k = 2; k < size; k += 2) {
+                total += Math.hypot((line[k] - line[k - 2]) * cosLat, line[k + 1] - line[k - 1]);
+            }
+            double left = total * this.fraction[i];
+            for (int k = 2; k < size && left > 0; k += 2) {
+                double dx = line[k] - line[k - 2];
+                double dy = line[k + 1] - line[k - 1];
+                double length = Math.hypot(dx * cosLat, dy);
+                double t = length == 0 ? 1 : Math.min(1, left / length);
+                int samples = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)) * t / step) + 1;
+                for (int s = 0; s <= samples; s++) {
+                    double lon = line[k - 2] + dx * t * s / samples;
+                    double lat = line[k - 1] + dy * t * s / samples;
+                    long key = (long) Math.floor(lon / cellSize) << 32 | ((long) Math.floor(lat / cellSize) & 0xFFFFFFFFL);
+                    if (seen.putIfAbsent(key, count) < 0) {
+                        if (count == cell.length) {
+                            cell = Arrays.copyOf(cell, count * 2);
+                        }
+                        cell[count++] = key;
+                    }
+                }
+                left -= length;
+            }
+        }
+        double[] corners = new double[2 * count];
+        for (int c = 0; c < count; c++) {
+            corners[2 * c] = (cell[c] >> 32) * cellSize;
+            corners[2 * c + 1] = (int) cell[c] * cellSize;
+        }
+        return corners;
+    }
+}
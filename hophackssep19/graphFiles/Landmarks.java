@@ -0,0 +1,287 @@
+package graphFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+* ALT heuristic: shortest path weights from and to a few landmark vertices on
+* the edge of the map. By the triangle inequality a path from v to t weighs at
+* least d(L, t) - d(L, v) and at least d(v, L) - d(t, L) for every landmark L,
+* which stays tight when crime makes weights far longer than the roads.
+*
+* The tables are floats stored vertex by vertex, so one lookup reads all the
+* landmarks of a vertex together. Every float is rounded down when stored and
+* the bounds leave room for the rounding, so they never overshoot.
+*/
+public final class Landmarks implements Heuristic {
+
+    private static final int MAGIC = 0x4C414A53;
+    private static final int VERSION = 1;
+    private static final int HEADER = 4 * 4 + 8;
+    private static final float UNREACHED = Float.POSITIVE_INFINITY;
+
+    private final CompactGraph graph;
+    private final int[] landmark;
+    // from[v * k + i] is the weight from landmark i to v, to[v * k + i] from v to landmark i
+    private final float[] from;
+    private final float[] to;
+
+    private Landmarks(CompactGraph g, int[] landmark, float[] from, float[] to) {
+        this.graph = g;
+        this.landmark = landmark;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+    * Picks landmarks and computes their tables. The first landmark is the vertex
+    * farthest from the middle of the map, every next one the vertex whose round
+    * trip to the closest landmark so far weighs the most, so they spread around
+    * the edge of the map.
+    * @param g the graph, with the weights to compute for
+    * @param count the number of landmarks
+    * @return the landmarks
+    */
+    public static Landmarks build(CompactGraph g, int count) {
+        int n = g.vertexCount();
+        int k = Math.min(count, n);
+        int[] landmark = new int[k];
+        float[] from = new float[n * k];
+        float[] to = new float[n * k];
+        Landmarks lm = new Landmarks(g, landmark, from, to);
+        if (k == 0) {
+            return lm;
+        }
+
+        double lonSum = 0;
+        double latSum = 0;
+        for (int v = 0; v < n; v++) {
+            lonSum += g.lon(v);
+            latSum += g.lat(v);
+        }
+        double cosLat = Math.cos(Math.toRadians(latSum / n));
+        int next = 0;
+        double farthest = -1;
+        for (int v = 0; v < n; v++) {
+            double x = (g.lon(v) - lonSum / n) * cosLat;
+            double y = g.lat(v) - latSum / n;
+            if (x * x + y * y > farthest) {
+                farthest = x * x + y * y;
+                next = v;
+            }
+        }
+
+        SearchContext ctx = new SearchContext(n);
+        double[] closest = new double[n];
+        Arrays.fill(closest, Double.MAX_VALUE);
+        for (int i = 0; i < k; i++) {
+            landmark[i] = next;
+            lm.fill(ctx, i, true);
+            lm.fill(ctx, i, false);
+            farthest = -1;
+            for (int v = 0; v < n; v++) {
+                if (from[v * k + i] != UNREACHED && to[v * k + i] != UNREACHED) {
+                    closest[v] = Math.min(closest[v], (double) from[v * k + i] + to[v * k + i]);
+                }
+                if (closest[v] != Double.MAX_VALUE && closest[v] > farthest) {
+                    farthest = closest[v];
+                    next = v;
+                }
+            }
+        }
+        return lm;
+    }
+
+    //dijkstra from landmark i over outgoing edges, or to it over incoming ones, into its table column
+    private void fill(SearchContext ctx, int i, boolean forward) {
+        CompactGraph g = this.graph;
+        int k = this.landmark.length;
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+        ctx.label(this.landmark[i], 0, -1);
+        heap.push(this.landmark[i], 0);
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            ctx.settle(v);
+            double currDistance = ctx.dist(v);
+            int end = forward ? g.outEnd(v) : g.inEnd(v);
+            for (int slot = forward ? g.outStart(v) : g.inStart(v); slot < end; slot++) {
+                int e = forward ? slot : g.inEdge(slot);
+                int other = forward ? g.target(e) : g.source(e);
+                double newWeight = currDistance + g.weight(e);
+                if (newWeight < ctx.dist(other) && !ctx.settled(other)) {
+                    ctx.label(other, newWeight, e);
+                    heap.push(other, newWeight);
+                }
+            }
+        }
+        float[] table = forward ? this.from : this.to;
+        for (int v = 0; v < g.vertexCount(); v++) {
+            table[v * k + i] = ctx.settled(v) ? roundDown(ctx.dist(v)) : UNREACHED;
+        }
+    }
+
+    private static float roundDown(double d) {
+        float f = (float) d;
+        return f > d ? Math.nextDown(f) : f;
+    }
+
+    /**
+    * Recomputes the tables for new weights of the same roads. A table is only
+    * recomputed if a changed edge is tight in it, meaning it lies on a shortest
+    * path from or to the landmark or now gives a shorter one.
+    * @param g the reweighted graph
+    * @param changedEdges the ids of the edges whose weight changed
+    * @return the updated landmarks, these are left as they were
+    */
+    public Landmarks update(CompactGraph g, int[] changedEdges) {
+        if (g.edgeCount() != this.graph.edgeCount()) {
+            throw new IllegalArgumentException();
+        }
+        int k = this.landmark.length;
+        boolean[] dirty = new boolean[2 * k];
+        for (int e : changedEdges) {
+            int u = g.source(e);
+            int x = g.target(e);
+            double w = Math.min(this.graph.weight(e), g.weight(e));
+            for (int i = 0; i < k; i++) {
+                float fu = this.from[u * k + i];
+                float fx = this.from[x * k + i];
+                if (fu != UNREACHED && fu + w <= (double) fx + Math.ulp(fx) + Math.ulp(fu)) {
+                    dirty[2 * i] = true;
+                }
+                float tu = this.to[u * k + i];
+                float tx = this.to[x * k + i];
+                if (tx != UNREACHED && tx + w <= (double) tu + Math.ulp(tu) + Math.ulp(tx)) {
+                    dirty[2 * i + 1] = true;
+                }
+            }
+        }
+        Landmarks lm = new Landmarks(g, this.landmark, this.from.clone(), this.to.clone());
+        IntStream.range(0, 2 * k).filter(j -> dirty[j]).parallel()
+                 .forEach(j -> lm.fill(new SearchContext(g.vertexCount()), j / 2, j % 2 == 0));
+        return lm;
+    }
+
+    /**
+    * @return the graph whose weights the tables were computed for
+    */
+    public CompactGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+    * @return the number of landmarks
+    */
+    public int count() {
+        return this.landmark.length;
+    }
+
+    /**
+    * @param i the landmark number
+    * @return the vertex id of the landmark
+    */
+    public int landmark(int i) {
+        return this.landmark[i];
+    }
+
+    @Override
+    public double lowerBound(int v, int target) {
+        int k = this.landmark.length;
+        int vi = v * k;
+        int ti = target * k;
+        double best = 0;
+        for (int i = 0; i < k; i++) {
+            //the subtracted weight is rounded down, so its ulp is added back
+            float fv = this.from[vi + i];
+            float ft = this.from[ti + i];
+            if (fv != UNREACHED && ft != UNREACHED) {
+                best = Math.max(best, (double) ft - fv - Math.ulp(fv));
+            }
+            float tv = this.to[vi + i];
+            float tt = this.to[ti + i];
+            if (tv != UNREACHED && tt != UNREACHED) {
+                best = Math.max(best, (double) tv - tt - Math.ulp(tt));
+            }
+        }
+        return best;
+    }
+
+    /**
+    * Writes the landmarks, replacing the file if it exists.
+    * Layout, little endian: magic, version, vertex count n, landmark count k,
+    * fingerprint of the graph, then landmark[k], from[n * k] and to[n * k].
+    * @param file the file to write
+    * @throws IOException if the file can not be written
+    */
+    public void write(String file) throws IOException {
+        int n = this.graph.vertexCount();
+        int k = this.landmark.length;
+        long size = HEADER + 4L * k + 8L * n * k;
+        ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(k).putLong(this.graph.fingerprint());
+        buf.asIntBuffer().put(this.landmark);
+        buf.position(buf.position() + 4 * k);
+        buf.asFloatBuffer().put(this.from);
+        buf.position(buf.position() + 4 * n * k);
+        buf.asFloatBuffer().put(this.to);
+        buf.position(buf.position() + 4 * n * k);
+        buf.flip();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    /**
+    * Maps a landmark file written by write.
+    * @param file the file to read
+    * @param g the graph the landmarks are for
+    * @return the landmarks, or null if the file was written for other weights
+    * @throws IOException if the file can not be read, holds no landmarks or is
+    * truncated or corrupt
+    */
+    public static Landmarks read(String file, CompactGraph g) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buf = map.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < HEADER || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException(file + " holds no landmarks");
+        }
+        int n = buf.getInt();
+        int k = buf.getInt();
+        if (n != g.vertexCount() || buf.getLong() != g.fingerprint()) {
+            return null;
+        }
+        if (k <= 0 || k > n || buf.remaining() != 4L * k + 8L * n * k) {
+            throw new IOException(file + " is truncated or corrupt");
+        }
+        int[] landmark = GraphSnapshot.ints(buf, k);
+        if (!GraphSnapshot.below(landmark, n)) {
+            throw new IOException(file + " is truncated or corrupt");
+        }
+        float[] from = floats(buf, n * k);
+        float[] to = floats(buf, n * k);
+        return new Landmarks(g, landmark, from, to);
+    }
+
+    //bulk copies the next count floats out of the buffer
+    private static float[] floats(ByteBuffer buf, int count) {
+        float[] values = new float[count];
+        buf.asFloatBuffer().get(values);
+        buf.position(buf.position() + 4 * count);
+        return values;
+    }
+}
@@ -0,0 +1,98 @@
+package graphFiles;
+
+/**
+* Open addressing hash map from long keys to int values, with no boxing and no
+* entry objects. Used to intern vertices by their packed coordinates and to
+* find duplicate edges by their packed vertex id pair.
+*/
+public final class LongIntHashMap {
+
+    private static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    /**
+    * Creates a map sized for the expected number of keys.
+    * @param expected the number of keys the map should hold without growing
+    */
+    public LongIntHashMap(int expected) {
+        int capacity = 16;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        this.allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    //spreads the key bits so packed coordinates do not cluster
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    /**
+    * @return the number of keys in the map
+    */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+    * @param key the key to look up
+    * @return the value of the key, or -1 if the key is not in the map
+    */
+    public int get(long key) {
+        for (int i = hash(key) & this.mask; this.used[i]; i = (i + 1) & this.mask) {
+            if (this.keys[i] == key) {
+                return this.values[i];
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+    * Adds the key unless it is already in the map.
+    * @param key the key to add
+    * @param value the value to store for a new key
+    * @return the value already stored for the key, or -1 if the key was added
+    */
+    public int putIfAbsent(long key, int value) {
+        int i = hash(key) & this.mask;
+        for (; this.used[i]; i = (i + 1) & this.mask) {
+            if (this.keys[i] == key) {
+                return this.values[i];
+            }
+        }
+        this.used[i] = true;
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.size++;
+        if (this.size * 2 > this.mask) {
+            this.grow();
+        }
+        return MISSING;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        boolean[] oldUsed = this.used;
+        this.allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                this.putIfAbsent(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package graphFiles;
+
+import java.util.Arrays;
+
+/**
+* Multi-criteria search over road length and crime exposure, the part of each
+* edge weight that crime adds. Instead of one route for one fixed trade-off it
+* finds the whole Pareto set, every route that no other route beats on both, so
+* a client can offer the shortest, the safest and the compromises between them
+* from one query.
+*
+* Each vertex keeps a list of labels, a length and an exposure that no other
+* label of the vertex beats on both, at most maxLabels of them. Labels live in
+* flat arrays reused by every query of the thread, whichever router over the
+* same vertices runs it. Two backward searches from the end first give lower
+* bounds on the length and exposure still to come, which guide the queue and
+* prune every label the routes already found beat.
+*/
+public final class ParetoRouter {
+
+    private final CompactGraph graph;
+    private final double[] base;
+    private final int maxLabels;
+
+    /**
+    * Prepares Pareto queries on a graph.
+    * @param g the graph, with length plus crime penalty as edge weights
+    * @param baseWeights the length of every road by edge id, copied
+    * @param maxLabels the most labels a vertex may keep, which bounds the work
+    * of a query at the cost of missing routes in very large Pareto sets
+    * @throws IllegalArgumentException if the lengths do not match the graph or maxLabels is not positive
+    */
+    public ParetoRouter(CompactGraph g, double[] baseWeights, int maxLabels) {
+        if (baseWeights.length != g.edgeCount() || maxLabels < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.graph = g;
+        this.base = baseWeights.clone();
+        this.maxLabels = maxLabels;
+    }
+
+    /**
+    * @return the graph this router searches
+    */
+    public CompactGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+    * @param e the edge id
+    * @return the length of the road
+    */
+    public double distance(int e) {
+        return this.base[e];
+    }
+
+    /**
+    * @param e the edge id
+    * @return the weight crime adds to the road
+    */
+    public double exposure(int e) {
+        return Math.max(0, this.graph.weight(e) - this.base[e]);
+    }
+
+    /**
+    * Finds the Pareto set of routes between two vertices.
+    * @param start the vertex to route from
+    * @param end the vertex to route to
+    * @return the routes, empty if end can not be reached
+    */
+    public ParetoSet route(int start, int end) {
+        CompactGraph g = this.graph;
+        Labels s = SearchScratch.of(g.vertexCount()).labels();
+        this.boundFrom(s.toGo, end, true);
+        this.boundFrom(s.riskToGo, end, false);
+        SearchContext toGo = s.toGo;
+        SearchContext riskToGo = s.riskToGo;
+        s.reset();
+        if (!toGo.settled(start)) {
+            return new ParetoSet(new Route[0], new double[0], new double[0], 0);
+        }
+
+        s.push(s.add(start, 0, 0, -1, -1), toGo.dist(start) + riskToGo.dist(start));
+        int settled = 0;
+        while (s.heapSize > 0) {
+            int label = s.poll();
+            int v = s.vertex[label];
+            if (s.dead[label]
+                || s.targetDominates(s.dist[label] + toGo.dist(v), s.risk[label] + riskToGo.dist(v))) {
+                continue;
+            }
+            settled++;
+            if (v == end) {
+                s.addTarget(label);
+                continue;
+            }
+            double d = s.dist[label];
+            double r = s.risk[label];
+            for (int e = g.outStart(v); e < g.outEnd(v); e++) {
+                int to = g.target(e);
+                if (!toGo.settled(to)) {
+                    continue;
+                }
+                double nd = d + this.base[e];
+                double nr = r + this.exposure(e);
+                //a route already found is at least as short and as safe as any through this label
+                if (s.targetDominates(nd + toGo.dist(to), nr + riskToGo.dist(to))
+                    || !s.keep(to, nd, nr, this.maxLabels)) {
+                    continue;
+                }
+                int next = s.add(to, nd, nr, label, e);
+                s.push(next, nd + nr + toGo.dist(to) + riskToGo.dist(to));
+            }
+        }
+
+        //the targets were found by increasing key, ordered here by distance
+        int count = s.targetCount;
+        int[] order = Arrays.copyOf(s.target, count);
+        for (int i = 1; i < count; i++) {
+            int t = order[i];
+            int j = i;
+            while (j > 0 && s.dist[order[j - 1]] > s.dist[t]) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = t;
+        }
+        Route[] routes = new Route[count];
+        double[] distance = new double[count];
+        double[] exposure = new double[count];
+        for (int i = 0; i < count; i++) {
+            int t = order[i];
+            distance[i] = s.dist[t];
+            exposure[i] = s.risk[t];
+            routes[i] = new Route(s.path(t), s.dist[t] + s.risk[t], settled);
+        }
+        return new ParetoSet(routes, distance, exposure, settled);
+    }
+
+    //dijkstra backward from the end over lengths or exposures, the exact bound for each vertex
+    private void boundFrom(SearchContext ctx, int end, boolean length) {
+        CompactGraph g = this.graph;
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+        ctx.label(end, 0, -1);
+        heap.push(end, 0);
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            ctx.settle(v);
+            double currDistance = ctx.dist(v);
+            for (int slot = g.inStart(v); slot < g.inEnd(v); slot++) {
+                int e = g.inEdge(slot);
+                int from = g.source(e);
+                double newWeight = currDistance + (length ? this.base[e] : this.exposure(e));
+                if (newWeight < ctx.dist(from) && !ctx.settled(from)) {
+                    ctx.label(from, newWeight, e);
+                    heap.push(from, newWeight);
+                }
+            }
+        }
+    }
+
+    /**
+    * Label pool and queue of one thread. A label is an index into the flat
+    * arrays, the labels kept at a vertex are linked through next, and the
+    * heads of the lists are stamped with the query they belong to so a new
+    * query starts without clearing them.
+    */
+    static final class Labels {
+
+        private final SearchContext toGo;
+        private final SearchContext riskToGo;
+        private double[] dist = new double[1024];
+        private double[] risk = new double[1024];
+        private int[] vertex = new int[1024];
+        private int[] parent = new int[1024];
+        private int[] edge = new int[1024];
+        private int[] next = new int[1024];
+        private boolean[] dead = new boolean[1024];
+        private int count;
+        private final int[] head;
+        private final int[] kept;
+        private final int[] stamp;
+        private int generation;
+        // lazy binary heap of labels, dominated ones are skipped when polled
+        private double[] heapKey = new double[1024];
+        private int[] heapLabel = new int[1024];
+        private int heapSize;
+        private int[] target = new int[16];
+        private int targetCount;
+
+        Labels(int vertexCount) {
+            this.toGo = new SearchContext(vertexCount);
+            this.riskToGo = new SearchContext(vertexCount);
+            this.head = new int[vertexCount];
+            this.kept = new int[vertexCount];
+            this.stamp = new int[vertexCount];
+        }
+
+        private void reset() {
+            this.count = 0;
+            this.heapSize = 0;
+            this.targetCount = 0;
+            this.generation++;
+            if (this.generation == Integer.MAX_VALUE) {
+                Arrays.fill(this.stamp, 0);
+                this.generation = 1;
+            }
+        }
+
+        private int firstAt(int v) {
+            return this.stamp[v] == this.generation ? this.head[v] : -1;
+        }
+
+        private int add(int v, double d, double r, int from, int e) {
+            if (this.count == this.dist.length) {
+                int capacity = this.count * 2;
+                this.dist = Arrays.copyOf(this.dist, capacity);
+                this.risk = Arrays.copyOf(this.risk, capacity);
+                this.vertex = Arrays.copyOf(this.vertex, capacity);
+                this.parent = Arrays.copyOf(this.parent, capacity);
+                this.edge = Arrays.copyOf(this.edge, capacity);
+                this.next = Arrays.copyOf(this.next, capacity);
+                this.dead = Arrays.copyOf(this.dead, capacity);
+            }
+            int label = this.count++;
+            this.dist[label] = d;
+            this.risk[label] = r;
+            this.vertex[label] = v;
+            this.parent[label] = from;
+            this.edge[label] = e;
+            this.dead[label] = false;
+            if (this.stamp[v] != this.generation) {
+                this.stamp[v] = this.generation;
+                this.head[v] = -1;
+                this.kept[v] = 0;
+            }
+            this.next[label] = this.head[v];
+            this.head[v] = label;
+            this.kept[v]++;
+            return label;
+        }
+
+        /**
+        * Checks a new label of a vertex against the ones it keeps, dropping
+        * those the new label beats on both criteria.
+        * @return false if a kept label is at least as good on both, or the vertex is full
+        */
+        private boolean keep(int v, double d, double r, int maxLabels) {
+            int prev = -1;
+            for (int label = this.firstAt(v); label >= 0; label = this.next[label]) {
+                if (this.dist[label] <= d && this.risk[label] <= r) {
+                    return false;
+                }
+                if (d <= this.dist[label] && r <= this.risk[label]) {
+                    this.dead[label] = true;
+                    this.kept[v]--;
+                    if (prev < 0) {
+                        this.head[v] = this.next[label];
+                    } else {
+                        this.next[prev] = this.next[label];
+                    }
+                } else {
+                    prev = label;
+                }
+            }
+            return this.firstAt(v) < 0 || this.kept[v] < maxLabels;
+        }
+
+        private boolean targetDominates(double d, double r) {
+            for (int i = 0; i < this.targetCount; i++) {
+                int t = this.target[i];
+                if (this.dist[t] <= d && this.risk[t] <= r) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addTarget(int label) {
+            if (this.targetCount == this.target.length) {
+                this.target = Arrays.copyOf(this.target, this.targetCount * 2);
+            }
+            this.target[this.targetCount++] = label;
+        }
+
+        private int[] path(int label) {
+            int length = 0;
+            for (int l = label; this.parent[l] >= 0; l = this.parent[l]) {
+                length++;
+            }
+            int[] path = new int[length];
+            for (int l = label; this.parent[l] >= 0; l = this.parent[l]) {
+                path[--length] = this.edge[l];
+            }
+            return path;
+        }
+
+        private void push(int label, double key) {
+            if (this.heapSize == this.heapKey.length) {
+                this.heapKey = Arrays.copyOf(this.heapKey, this.heapSize * 2);
+                this.heapLabel = Arrays.copyOf(this.heapLabel, this.heapSize * 2);
+            }
+            int i = this.heapSize++;
+            while (i > 0 && this.heapKey[(i - 1) >>> 1] > key) {
+                int up = (i - 1) >>> 1;
+                this.heapKey[i] = this.heapKey[up];
+                this.heapLabel[i] = this.heapLabel[up];
+                i = up;
+            }
+            this.heapKey[i] = key;
+            this.heapLabel[i] = label;
+        }
+
+        private int poll() {
+            int top = this.heapLabel[0];
+            int last = --this.heapSize;
+            double key = this.heapKey[last];
+            int label = this.heapLabel[last];
+            int i = 0;
+            while (2 * i + 1 < last) {
+                int child = 2 * i + 1;
+                if (child + 1 < last && this.heapKey[child + 1] < this.heapKey[child]) {
+                    child++;
+                }
+                if (this.heapKey[child] >= key) {
+                    break;
+                }
+                this.heapKey[i] = this.heapKey[child];
+                this.heapLabel[i] = this.heapLabel[child];
+                i = child;
+            }
+            this.heapKey[i] = key;
+            this.heapLabel[i] = label;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package graphFiles;
+
+/**
+* Immutable result of one Pareto query: every route between two points that no
+* other route beats on both road length and crime exposure, ordered from the
+* shortest, which has the most crime, to the safest, which is the longest.
+*/
+public final class ParetoSet {
+
+    private final Route[] routes;
+    private final double[] distance;
+    private final double[] exposure;
+    private final int settled;
+
+    /**
+    * @param routes the routes ordered by distance, owned by the set
+    * @param distance the road length of each route
+    * @param exposure the crime penalty of each route
+    * @param settled the number of labels the search settled
+    */
+    ParetoSet(Route[] routes, double[] distance, double[] exposure, int settled) {
+        this.routes = routes;
+        this.distance = distance;
+        this.exposure = exposure;
+        this.settled = settled;
+    }
+
+    /**
+    * @return the number of routes, 0 if the end can not be reached
+    */
+    public int size() {
+        return this.routes.length;
+    }
+
+    /**
+    * @param i the position in the set, 0 is the shortest route
+    * @return the route, its weight is its distance plus its exposure
+    */
+    public Route route(int i) {
+        return this.routes[i];
+    }
+
+    /**
+    * @param i the position in the set
+    * @return the road length of the route
+    */
+    public double distance(int i) {
+        return this.distance[i];
+    }
+
+    /**
+    * @param i the position in the set
+    * @return the crime penalty the route adds to its length
+    */
+    public double exposure(int i) {
+        return this.exposure[i];
+    }
+
+    /**
+    * @return the shortest route, or null if there is none
+    */
+    public Route shortest() {
+        return this.routes.length == 0 ? null : this.routes[0];
+    }
+
+    /**
+    * @return the route with the least crime, or null if there is none
+    */
+    public Route safest() {
+        return this.routes.length == 0 ? null : this.routes[this.routes.length - 1];
+    }
+
+    /**
+    * @return the number of labels the search settled
+    */
+    public int settled() {
+        return this.settled;
+    }
+}
@@ -0,0 +1,85 @@
+package graphFiles;
+
+/**
+* Roads read from a map file, with vertices numbered in order of first
+* appearance and roads in file order, and the shape points each road bends
+* through between its ends. StreetSearch loads any of them the same way.
+*/
+public interface RoadSource {
+
+    /**
+    * @return the number of distinct vertices read
+    */
+    int vertexCount();
+
+    /**
+    * @param v the vertex id
+    * @return the coordinates of the vertex as a Longitude,Latitude pair
+    */
+    String vertexName(int v);
+
+    /**
+    * @param v the vertex id
+    * @return the longitude of the vertex
+    */
+    double lon(int v);
+
+    /**
+    * @param v the vertex id
+    * @return the latitude of the vertex
+    */
+    double lat(int v);
+
+    /**
+    * @return the number of roads read
+    */
+    int edgeCount();
+
+    /**
+    * @param e the road number
+    * @return the vertex id the road starts at
+    */
+    int from(int e);
+
+    /**
+    * @param e the road number
+    * @return the vertex id the road ends at
+    */
+    int to(int e);
+
+    /**
+    * @param e the road number
+    * @return the weight of the road
+    */
+    double weight(int e);
+
+    /**
+    * @param e the road number
+    * @return the name of the road
+    */
+    String name(int e);
+
+    /**
+    * @param e the road number
+    * @return the index of the first shape point between the ends of the road
+    */
+    int shapeStart(int e);
+
+    /**
+    * @param e the road number
+    * @return one past the index of the last shape point between the ends of the road
+    */
+    int shapeEnd(int e);
+
+    /**
+    * @param i the index of a shape point
+    * @return the longitude of the point
+    */
+    double shapeLon(int i);
+
+    /**
+    * @param i the index of a shape point
+    * @return the latitude of the point
+    */
+    double shapeLat(int i);
+}
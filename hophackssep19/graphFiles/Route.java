@@ -0,0 +1,58 @@
+package graphFiles;
+
+/**
+* Immutable result of one route query.
+*/
+public final class Route {
+
+    private final int[] edges;
+    private final double weight;
+    private final int settled;
+
+    /**
+    * @param edges the edge ids of the path from start to end, owned by the route
+    * @param weight the total weight of the path
+    * @param settled the number of vertices the search settled
+    */
+    Route(int[] edges, double weight, int settled) {
+        this.edges = edges;
+        this.weight = weight;
+        this.settled = settled;
+    }
+
+    /**
+    * @return the number of edges on the path
+    */
+    public int size() {
+        return this.edges.length;
+    }
+
+    /**
+    * @param i the position on the path, 0 is the edge leaving the start
+    * @return the edge id at that position
+    */
+    public int edge(int i) {
+        return this.edges[i];
+    }
+
+    /**
+    * @return a copy of the edge ids of the path from start to end
+    */
+    public int[] edges() {
+        return this.edges.clone();
+    }
+
+    /**
+    * @return the total weight of the path
+    */
+    public double weight() {
+        return this.weight;
+    }
+
+    /**
+    * @return the number of vertices the search settled
+    */
+    public int settled() {
+        return this.settled;
+    }
+}
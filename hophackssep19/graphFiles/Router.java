@@ -0,0 +1,655 @@
+package graphFiles;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+* Shortest path searches over a CompactGraph.
+* Paths are returned as arrays of edge ids ordered from start to end.
+* Each thread searches with its own pair of SearchContexts, which are reset
+* rather than reallocated, so the search loops themselves never allocate.
+* The contexts belong to the thread rather than the router, so the routers
+* published after a crime update reuse them too.
+* The graph is never written to, so one router can serve many threads at once.
+*/
+public final class Router {
+
+    private static final double MAX_WEIGHT = 1e8;
+    private static final double EARTH_RADIUS = 6371000.0;
+    // walking pace used to tell when each road of a route is reached
+    private static final double WALKING_SPEED = 1.4;
+
+    private final CompactGraph graph;
+    // built for the weights of the graph, or null if there is none
+    private final ContractionHierarchy hierarchy;
+    // customized for the weights of the graph, or null if there is none
+    private final CellOverlay overlay;
+    // computed for the weights of the graph, or null if there are none
+    private final Landmarks landmarks;
+    // hourly crime shares of the roads, or null if there are none
+    private final CrimeProfile profile;
+    // cosine of the latitude the map is projected around
+    private final double cosLat;
+    // meters of edge weight per projected meter, never more than any edge allows
+    private final double scale;
+    // the straight line estimate of A*
+    private final Heuristic geographic;
+
+    /**
+    * Prepares a router for the given graph and calibrates the A* estimate.
+    * The scale is the smallest weight per meter of any edge, so every path weighs
+    * at least scale times its straight line length and the estimate never
+    * overshoots, including after crime penalties have been added to the weights.
+    * @param g the graph to route on
+    */
+    public Router(CompactGraph g) {
+        this(g, null, null, null, null);
+    }
+
+    /**
+    * Prepares a router that can also answer HIERARCHY, OVERLAY and ALT queries.
+    * @param g the graph to route on
+    * @param ch a hierarchy built for exactly the weights of g, or null
+    * @param cells an overlay customized for g, or null
+    * @param lm landmarks computed for g, or null
+    * @throws IllegalArgumentException if any of them belongs to other weights
+    */
+    public Router(CompactGraph g, ContractionHierarchy ch, CellOverlay cells, Landmarks lm) {
+        this(g, ch, cells, lm, null);
+    }
+
+    /**
+    * Prepares a router that can also answer HIERARCHY, OVERLAY and ALT queries,
+    * and time dependent queries if given crime profiles.
+    * @param g the graph to route on
+    * @param ch a hierarchy built for exactly the weights of g, or null
+    * @param cells an overlay customized for g, or null
+    * @param lm landmarks computed for g, or null
+    * @param hourly crime profiles of the roads of g, or null
+    * @throws IllegalArgumentException if any of them belongs to other weights or roads
+    */
+    public Router(CompactGraph g, ContractionHierarchy ch, CellOverlay cells, Landmarks lm,
+                  CrimeProfile hourly) {
+        if ((ch != null && !ch.matches(g)) || (cells != null && cells.getGraph() != g)
+            || (lm != null && lm.getGraph() != g)
+            || (hourly != null && hourly.edgeCount() != g.edgeCount())) {
+            throw new IllegalArgumentException();
+        }
+        this.graph = g;
+        this.hierarchy = ch;
+        this.overlay = cells;
+        this.landmarks = lm;
+        this.profile = hourly;
+
+        double latSum = 0;
+        for (int v = 0; v < g.vertexCount(); v++) {
+            latSum += g.lat(v);
+        }
+        this.cosLat = g.vertexCount() == 0 ? 1 : Math.cos(Math.toRadians(latSum / g.vertexCount()));
+
+        double min = Double.MAX_VALUE;
+        for (int e = 0; e < g.edgeCount(); e++) {
+            double length = this.straightLine(g.source(e), g.target(e));
+            if (length > 0) {
+                min = Math.min(min, g.weight(e) / length);
+            }
+        }
+        this.scale = min == Double.MAX_VALUE ? 0 : Math.max(min, 0);
+        this.geographic = (v, target) -> this.scale * this.straightLine(v, target);
+    }
+
+    //scratch space of the calling thread, shared by every router over as many vertices
+    private SearchScratch scratch() {
+        return SearchScratch.of(this.graph.vertexCount());
+    }
+
+    /**
+    * @return the graph this router searches
+    */
+    public CompactGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+    * @return the hierarchy HIERARCHY queries use, or null if there is none
+    */
+    public ContractionHierarchy getHierarchy() {
+        return this.hierarchy;
+    }
+
+    /**
+    * @return the overlay OVERLAY queries use, or null if there is none
+    */
+    public CellOverlay getOverlay() {
+        return this.overlay;
+    }
+
+    /**
+    * @return the landmarks ALT queries use, or null if there are none
+    */
+    public Landmarks getLandmarks() {
+        return this.landmarks;
+    }
+
+    /**
+    * @return the crime profiles time dependent queries use, or null if there are none
+    */
+    public CrimeProfile getProfile() {
+        return this.profile;
+    }
+
+    /**
+    * Straight line distance between two vertices on the local projection.
+    * @param a the first vertex
+    * @param b the second vertex
+    * @return the distance in meters
+    */
+    public double straightLine(int a, int b) {
+        double x = Math.toRadians(this.graph.lon(a) - this.graph.lon(b)) * this.cosLat;
+        double y = Math.toRadians(this.graph.lat(a) - this.graph.lat(b));
+        return EARTH_RADIUS * Math.sqrt(x * x + y * y);
+    }
+
+    /**
+    * Finds the lowest weight path between two vertices.
+    * @param start the vertex to route from
+    * @param end the vertex to route to
+    * @param mode the search algorithm to use
+    * @return the route from start to end, or null if there is none
+    * @throws IllegalStateException if the router has no hierarchy, overlay or landmarks for the mode
+    */
+    public Route route(int start, int end, SearchMode mode) {
+        switch (mode) {
+            case HIERARCHY:
+                if (this.hierarchy == null) {
+                    throw new IllegalStateException();
+                }
+                return this.hierarchy.route(start, end);
+            case OVERLAY:
+                if (this.overlay == null) {
+                    throw new IllegalStateException();
+                }
+                return this.overlay.route(start, end);
+            case ASTAR:
+                return this.search(start, end, this.geographic);
+            case ALT:
+                if (this.landmarks == null) {
+                    throw new IllegalStateException();
+                }
+                return this.search(start, end, this.landmarks);
+            case BIDIRECTIONAL:
+                return this.bidirectional(start, end, false);
+            case BIDIRECTIONAL_ASTAR:
+                return this.bidirectional(start, end, true);
+            default:
+                return this.search(start, end, null);
+        }
+    }
+
+    /**
+    * Finds the lowest weight path between two vertices for a walk leaving at a
+    * given time. Each road weighs its length plus its crime penalty at the
+    * hour the walk reaches it, assuming a walking pace along the straight line
+    * of each road. A vertex is reached at the time of its lowest weight path,
+    * which is what a walker following the route would see.
+    * @param start the vertex to route from
+    * @param end the vertex to route to
+    * @param departMillis the local time the walk starts, in milliseconds since 1970-01-01T00:00
+    * @return the route from start to end, or null if there is none
+    * @throws IllegalStateException if the router has no crime profiles
+    */
+    public Route route(int start, int end, long departMillis) {
+        if (this.profile == null) {
+            throw new IllegalStateException();
+        }
+        SearchScratch scratch = this.scratch();
+        SearchContext ctx = scratch.context(SearchScratch.ROUTER_FORWARD);
+        long[] time = scratch.arrival();
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+
+        ctx.label(start, 0, -1);
+        heap.push(start, 0);
+
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            ctx.settle(v);
+            if (v == start) {
+                time[v] = departMillis;
+            } else {
+                int e = ctx.parent(v);
+                time[v] = time[this.graph.source(e)] + this.walkMillis(e);
+            }
+            if (v == end) {
+                break;
+            }
+
+            double currDistance = ctx.dist(v);
+            for (int e = this.graph.outStart(v); e < this.graph.outEnd(v); e++) {
+                int to = this.graph.target(e);
+                double newWeight = currDistance + this.profile.weight(e, this.graph.weight(e), time[v]);
+                if (newWeight < ctx.dist(to) && !ctx.settled(to)) {
+                    ctx.label(to, newWeight, e);
+                    heap.push(to, newWeight);
+                }
+            }
+        }
+        if (!ctx.settled(end)) {
+            return null;
+        }
+        return new Route(pathTo(ctx, start, end), ctx.dist(end), ctx.settledCount());
+    }
+
+    //milliseconds it takes to walk the straight line of an edge
+    private long walkMillis(int e) {
+        return Math.round(this.straightLine(this.graph.source(e), this.graph.target(e)) / WALKING_SPEED * 1000);
+    }
+
+    /**
+    * Computes the lowest path weight from every origin to every target. With a
+    * hierarchy this is the bucket search of ContractionHierarchy.matrix,
+    * otherwise each origin runs one search that stops once every target is
+    * settled. Origins are spread over the common fork-join pool.
+    * @param origins the vertices to route from
+    * @param targets the vertices to route to
+    * @return weight[i][j] from origins[i] to targets[j], infinite if there is no path
+    */
+    public double[][] matrix(int[] origins, int[] targets) {
+        if (this.hierarchy != null) {
+            return this.hierarchy.matrix(origins, targets);
+        }
+        boolean[] target = new boolean[this.graph.vertexCount()];
+        int distinct = 0;
+        for (int t : targets) {
+            if (!target[t]) {
+                target[t] = true;
+                distinct++;
+            }
+        }
+        int targetCount = distinct;
+        double[][] weight = new double[origins.length][];
+        IntStream.range(0, origins.length).parallel()
+                 .forEach(i -> weight[i] = this.oneToMany(origins[i], targets, target, targetCount));
+        return weight;
+    }
+
+    //dijkstra from start until all the distinct targets are settled
+    private double[] oneToMany(int start, int[] targets, boolean[] target, int targetCount) {
+        SearchContext ctx = this.scratch().context(SearchScratch.ROUTER_FORWARD);
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+        ctx.label(start, 0, -1);
+        heap.push(start, 0);
+        int left = targetCount;
+        while (!heap.isEmpty() && left > 0) {
+            int v = heap.poll();
+            ctx.settle(v);
+            if (target[v]) {
+                left--;
+            }
+            double currDistance = ctx.dist(v);
+            for (int e = this.graph.outStart(v); e < this.graph.outEnd(v); e++) {
+                int to = this.graph.target(e);
+                double newWeight = currDistance + this.graph.weight(e);
+                if (newWeight < ctx.dist(to) && !ctx.settled(to)) {
+                    ctx.label(to, newWeight, e);
+                    heap.push(to, newWeight);
+                }
+            }
+        }
+        double[] row = new double[targets.length];
+        for (int j = 0; j < targets.length; j++) {
+            row[j] = ctx.settled(targets[j]) ? ctx.dist(targets[j]) : Double.POSITIVE_INFINITY;
+        }
+        return row;
+    }
+
+    /**
+    * Finds every road reachable from a vertex within a weight budget. The
+    * search settles vertices in order of weight and stops at the first one
+    * over budget, so it only visits the area it returns. A road is reached in
+    * full if its far end is within budget, otherwise as far as the budget left
+    * at its start allows.
+    * @param start the vertex to search from
+    * @param budget the largest path weight allowed
+    * @return the roads reached
+    */
+    public Isochrone isochrone(int start, double budget) {
+        SearchContext ctx = this.scratch().context(SearchScratch.ROUTER_FORWARD);
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+        ctx.label(start, 0, -1);
+        heap.push(start, 0);
+        int[] edges = new int[64];
+        double[] fraction = new double[64];
+        int count = 0;
+        while (!heap.isEmpty() && heap.peekKey() <= budget) {
+            int v = heap.poll();
+            ctx.settle(v);
+            double currDistance = ctx.dist(v);
+            for (int e = this.graph.outStart(v); e < this.graph.outEnd(v); e++) {
+                double w = this.graph.weight(e);
+                //the same sum as the heap key, so a road ending exactly at the budget is reached in full
+                double share = currDistance + w <= budget ? 1 : (budget - currDistance) / w;
+                if (share <= 0) {
+                    continue;
+                }
+                if (count == edges.length) {
+                    edges = Arrays.copyOf(edges, count * 2);
+                    fraction = Arrays.copyOf(fraction, count * 2);
+                }
+                edges[count] = e;
+                fraction[count++] = share;
+                int to = this.graph.target(e);
+                if (currDistance + w < ctx.dist(to) && !ctx.settled(to)) {
+                    ctx.label(to, currDistance + w, e);
+                    heap.push(to, currDistance + w);
+                }
+            }
+        }
+        return new Isochrone(this.graph, start, budget, Arrays.copyOf(edges, count),
+                             Arrays.copyOf(fraction, count), ctx.settledCount());
+    }
+
+    /**
+    * Finds up to k routes between two vertices that are each close to the
+    * shortest and differ from each other, with the plateau method: one forward
+    * tree from the start and one backward tree from the end, both grown until
+    * they pass the longest route allowed. Stretches of road both trees share
+    * are plateaus, and every plateau gives a route that follows the forward
+    * tree to it, the plateau itself and the backward tree from it. The
+    * shortest path is one plateau, so it comes first, and the other routes are
+    * taken by weight as long as their stretch and overlap stay bounded, so the whole
+    * query costs about two searches however many routes it returns.
+    * @param start the vertex to route from
+    * @param end the vertex to route to
+    * @param k the most routes to return
+    * @param maxStretch how much heavier than the shortest a route may be, 0.25 for a quarter
+    * @param maxOverlap the largest share of the weight of a route that may be
+    * on edges of a route already chosen
+    * @return the routes, shortest first, empty if there is none
+    */
+    public Route[] alternatives(int start, int end, int k, double maxStretch, double maxOverlap) {
+        SearchScratch scratch = this.scratch();
+        SearchContext fwd = scratch.context(SearchScratch.ROUTER_FORWARD);
+        SearchContext bwd = scratch.context(SearchScratch.ROUTER_BACKWARD);
+        this.tree(fwd, start, end, maxStretch, true);
+        if (!fwd.settled(end) || k < 1) {
+            return new Route[0];
+        }
+        double limit = fwd.dist(end) * (1 + maxStretch);
+        this.tree(bwd, end, start, maxStretch, false);
+        if (start == end) {
+            return new Route[] {new Route(new int[0], 0, fwd.settledCount() + bwd.settledCount())};
+        }
+
+        //a plateau starts at an edge both trees use whose tail the forward tree reaches by another edge
+        int[] candidate = new int[16];
+        double[] weight = new double[16];
+        int count = 0;
+        for (int e = 0; e < this.graph.edgeCount(); e++) {
+            int u = this.graph.source(e);
+            if (!this.onPlateau(fwd, bwd, e) || (u != start && this.onPlateau(fwd, bwd, fwd.parent(u)))) {
+                continue;
+            }
+            double w = fwd.dist(u) + bwd.dist(u);
+            if (w > limit) {
+                continue;
+            }
+            if (count == candidate.length) {
+                candidate = Arrays.copyOf(candidate, count * 2);
+                weight = Arrays.copyOf(weight, count * 2);
+            }
+            candidate[count] = e;
+            weight[count++] = w;
+        }
+
+        //tries the candidates by weight, keeping those different enough from the ones kept;
+        //the float bits of a positive weight sort like the weight, and the plateau
+        //leaving the start is the shortest path itself, so it is put first
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            long bits = this.graph.source(candidate[i]) == start ? 0 : Float.floatToIntBits((float) weight[i]);
+            order[i] = bits << 32 | i;
+        }
+        Arrays.sort(order);
+        Route[] chosen = new Route[Math.min(k, count)];
+        int[][] chosenEdges = new int[chosen.length][];
+        int found = 0;
+        int settled = fwd.settledCount() + bwd.settledCount();
+        for (int i = 0; i < count && found < chosen.length; i++) {
+            int c = (int) order[i];
+            int[] path = this.viaPlateau(fwd, bwd, start, end, candidate[c]);
+            double w = weight[c];
+            boolean distinct = true;
+            for (int j = 0; j < found && distinct; j++) {
+                distinct = this.shared(path, chosenEdges[j]) <= maxOverlap * w;
+            }
+            if (distinct) {
+                chosenEdges[found] = path.clone();
+                Arrays.sort(chosenEdges[found]);
+                chosen[found++] = new Route(path, w, settled);
+            }
+        }
+        return Arrays.copyOf(chosen, found);
+    }
+
+    //true if an edge is the parent of its head in the forward tree and of its tail in the backward tree
+    private boolean onPlateau(SearchContext fwd, SearchContext bwd, int e) {
+        int u = this.graph.source(e);
+        int v = this.graph.target(e);
+        return fwd.settled(v) && bwd.settled(u) && fwd.parent(v) == e && bwd.parent(u) == e;
+    }
+
+    //forward tree to the plateau, along it and the backward tree from its end
+    private int[] viaPlateau(SearchContext fwd, SearchContext bwd, int start, int end, int first) {
+        int u = this.graph.source(first);
+        int[] before = this.pathTo(fwd, start, u);
+        int after = 0;
+        for (int v = u; v != end; v = this.graph.target(bwd.parent(v))) {
+            after++;
+        }
+        int[] path = Arrays.copyOf(before, before.length + after);
+        int i = before.length;
+        for (int v = u; v != end; v = this.graph.target(bwd.parent(v))) {
+            path[i++] = bwd.parent(v);
+        }
+        return path;
+    }
+
+    //weight of the edges of a path that are also in a sorted edge list
+    private double shared(int[] path, int[] sortedEdges) {
+        double total = 0;
+        for (int e : path) {
+            if (Arrays.binarySearch(sortedEdges, e) >= 0) {
+                total += this.graph.weight(e);
+            }
+        }
+        return total;
+    }
+
+    /**
+    * Grows a shortest path tree from a root until the other end is settled and
+    * the queue passes the weight the longest allowed route may have. The queue
+    * is ordered by the A* estimate towards the other end, the landmarks if the
+    * router has them, so the tree only covers the vertices some allowed route
+    * can pass through.
+    */
+    private void tree(SearchContext ctx, int root, int other, double maxStretch, boolean outgoing) {
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+        ctx.label(root, 0, -1);
+        heap.push(root, 0);
+        Heuristic h = this.landmarks != null ? this.landmarks : this.geographic;
+        double limit = Double.MAX_VALUE;
+        while (!heap.isEmpty() && heap.peekKey() <= limit) {
+            int v = heap.poll();
+            ctx.settle(v);
+            if (v == other) {
+                limit = ctx.dist(v) * (1 + maxStretch);
+            }
+            double currDistance = ctx.dist(v);
+            int stop = outgoing ? this.graph.outEnd(v) : this.graph.inEnd(v);
+            for (int slot = outgoing ? this.graph.outStart(v) : this.graph.inStart(v); slot < stop; slot++) {
+                int e = outgoing ? slot : this.graph.inEdge(slot);
+                int to = outgoing ? this.graph.target(e) : this.graph.source(e);
+                double newWeight = currDistance + this.graph.weight(e);
+                if (newWeight < ctx.dist(to) && !ctx.settled(to)) {
+                    ctx.label(to, newWeight, e);
+                    double estimate = outgoing ? h.lowerBound(to, other) : h.lowerBound(other, to);
+                    heap.push(to, newWeight + estimate);
+                }
+            }
+        }
+    }
+
+    /**
+    * Adds up the weights along a path.
+    * @param path the edge ids of the path
+    * @return the total weight
+    */
+    public double weight(int[] path) {
+        double total = 0;
+        for (int e : path) {
+            total += this.graph.weight(e);
+        }
+        return total;
+    }
+
+    //dijkstra, or A* when a heuristic is given
+    private Route search(int start, int end, Heuristic h) {
+        SearchContext ctx = this.scratch().context(SearchScratch.ROUTER_FORWARD);
+        ctx.reset();
+        IndexedMinHeap heap = ctx.heap();
+
+        ctx.label(start, 0, -1);
+        heap.push(start, 0);
+
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            ctx.settle(v);
+            if (v == end) {
+                break;
+            }
+
+            double currDistance = ctx.dist(v);
+            for (int e = this.graph.outStart(v); e < this.graph.outEnd(v); e++) {
+                int to = this.graph.target(e);
+                double newWeight = currDistance + this.graph.weight(e);
+                if (newWeight < ctx.dist(to) && !ctx.settled(to)) {
+                    ctx.label(to, newWeight, e);
+                    double estimate = h == null ? 0 : h.lowerBound(to, end);
+                    heap.push(to, newWeight + estimate);
+                }
+            }
+        }
+        if (!ctx.settled(end)) {
+            return null;
+        }
+        return new Route(pathTo(ctx, start, end), ctx.dist(end), ctx.settledCount());
+    }
+
+    //follows parent edges back from the end of a forward search
+    private int[] pathTo(SearchContext ctx, int start, int end) {
+        int count = 0;
+        for (int v = end; v != start; v = this.graph.source(ctx.parent(v))) {
+            count++;
+        }
+        int[] path = new int[count];
+        for (int v = end; v != start; v = this.graph.source(ctx.parent(v))) {
+            path[--count] = ctx.parent(v);
+        }
+        return path;
+    }
+
+    /**
+    * Half the difference of the two straight line estimates. Used as the forward
+    * potential of a bidirectional A*, its negation is the backward potential, so
+    * both searches see the same reduced edge weights and may meet in the middle.
+    */
+    private double potential(int v, int start, int end) {
+        return this.scale * (this.straightLine(v, end) - this.straightLine(start, v)) / 2;
+    }
+
+    /**
+    * Searches forward from the start over outgoing edges and backward from the end
+    * over incoming edges at the same time. The search stops once the two queue
+    * minimums together are no smaller than the best path seen where they touch.
+    */
+    private Route bidirectional(int start, int end, boolean guided) {
+        SearchScratch scratch = this.scratch();
+        SearchContext fwd = scratch.context(SearchScratch.ROUTER_FORWARD);
+        SearchContext bwd = scratch.context(SearchScratch.ROUTER_BACKWARD);
+        fwd.reset();
+        bwd.reset();
+        IndexedMinHeap heapF = fwd.heap();
+        IndexedMinHeap heapB = bwd.heap();
+
+        fwd.label(start, 0, -1);
+        bwd.label(end, 0, -1);
+        heapF.push(start, guided ? this.potential(start, start, end) : 0);
+        heapB.push(end, guided ? -this.potential(end, start, end) : 0);
+
+        double best = start == end ? 0 : MAX_WEIGHT;
+        int meet = start == end ? start : -1;
+
+        //stops once neither side can still improve on the best path
+        while (!heapF.isEmpty() && !heapB.isEmpty() && heapF.peekKey() + heapB.peekKey() < best) {
+            //expands whichever side has the smaller frontier
+            if (heapF.size() <= heapB.size()) {
+                int v = heapF.poll();
+                fwd.settle(v);
+                double currDistance = fwd.dist(v);
+                for (int e = this.graph.outStart(v); e < this.graph.outEnd(v); e++) {
+                    int to = this.graph.target(e);
+                    double newWeight = currDistance + this.graph.weight(e);
+                    if (newWeight < fwd.dist(to) && !fwd.settled(to)) {
+                        fwd.label(to, newWeight, e);
+                        double p = guided ? this.potential(to, start, end) : 0;
+                        heapF.push(to, newWeight + p);
+                    }
+                    //the two searches touch here, keep the cheapest join
+                    if (bwd.reached(to) && fwd.dist(to) + bwd.dist(to) < best) {
+                        best = fwd.dist(to) + bwd.dist(to);
+                        meet = to;
+                    }
+                }
+            } else {
+                int v = heapB.poll();
+                bwd.settle(v);
+                double currDistance = bwd.dist(v);
+                for (int slot = this.graph.inStart(v); slot < this.graph.inEnd(v); slot++) {
+                    int e = this.graph.inEdge(slot);
+                    int from = this.graph.source(e);
+                    double newWeight = currDistance + this.graph.weight(e);
+                    if (newWeight < bwd.dist(from) && !bwd.settled(from)) {
+                        bwd.label(from, newWeight, e);
+                        double p = guided ? this.potential(from, start, end) : 0;
+                        heapB.push(from, newWeight - p);
+                    }
+                    if (fwd.reached(from) && fwd.dist(from) + bwd.dist(from) < best) {
+                        best = fwd.dist(from) + bwd.dist(from);
+                        meet = from;
+                    }
+                }
+            }
+        }
+        if (meet < 0) {
+            return null;
+        }
+
+        //walks back to the start, then forward to the end, from where the searches met
+        int[] before = pathTo(fwd, start, meet);
+        int after = 0;
+        for (int v = meet; v != end; v = this.graph.target(bwd.parent(v))) {
+            after++;
+        }
+        int[] path = new int[before.length + after];
+        System.arraycopy(before, 0, path, 0, before.length);
+        int i = before.length;
+        for (int v = meet; v != end; v = this.graph.target(bwd.parent(v))) {
+            path[i++] = bwd.parent(v);
+        }
+        return new Route(path, best, fwd.settledCount() + bwd.settledCount());
+    }
+}
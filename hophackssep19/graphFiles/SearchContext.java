@@ -0,0 +1,125 @@
+package graphFiles;
+
+import java.util.Arrays;
+
+/**
+* Reusable scratch space for one direction of a shortest path search.
+* Holds the distance and parent edge of every vertex plus the queue. Instead of
+* clearing the arrays between searches, reset() bumps a generation number and
+* labels written under an older generation read as unreached.
+*/
+public final class SearchContext {
+
+    private static final double MAX_WEIGHT = 1e8;
+
+    private final double[] dist;
+    private final int[] parent;
+    private final int[] reached;
+    private final int[] settled;
+    private final IndexedMinHeap heap;
+    private int generation;
+    private int settledCount;
+
+    /**
+    * Creates a context for graphs with the given number of vertices.
+    * @param vertexCount the number of vertices
+    */
+    public SearchContext(int vertexCount) {
+        this.dist = new double[vertexCount];
+        this.parent = new int[vertexCount];
+        this.reached = new int[vertexCount];
+        this.settled = new int[vertexCount];
+        this.heap = new IndexedMinHeap(vertexCount);
+        this.generation = 1;
+        this.settledCount = 0;
+    }
+
+    /**
+    * @return the number of vertices this context was made for
+    */
+    public int capacity() {
+        return this.dist.length;
+    }
+
+    /**
+    * Forgets every label and empties the queue without touching the label arrays.
+    */
+    public void reset() {
+        this.heap.clear();
+        this.settledCount = 0;
+        this.generation++;
+        //the stamps only wrap after billions of searches, then they are cleared once
+        if (this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.reached, 0);
+            Arrays.fill(this.settled, 0);
+            this.generation = 1;
+        }
+    }
+
+    /**
+    * @return the queue of this search
+    */
+    public IndexedMinHeap heap() {
+        return this.heap;
+    }
+
+    /**
+    * @param v the vertex id
+    * @return true if v has a distance in this search
+    */
+    public boolean reached(int v) {
+        return this.reached[v] == this.generation;
+    }
+
+    /**
+    * @param v the vertex id
+    * @return the distance found so far, or a very large weight if v is unreached
+    */
+    public double dist(int v) {
+        return this.reached[v] == this.generation ? this.dist[v] : MAX_WEIGHT;
+    }
+
+    /**
+    * @param v a reached vertex id
+    * @return the edge id v was reached through, or -1 for the search root
+    */
+    public int parent(int v) {
+        return this.parent[v];
+    }
+
+    /**
+    * Records a new distance for a vertex.
+    * @param v the vertex id
+    * @param d the distance
+    * @param edge the edge id v was reached through, or -1 for the search root
+    */
+    public void label(int v, double d, int edge) {
+        this.reached[v] = this.generation;
+        this.dist[v] = d;
+        this.parent[v] = edge;
+    }
+
+    /**
+    * @param v the vertex id
+    * @return true if the distance of v is final
+    */
+    public boolean settled(int v) {
+        return this.settled[v] == this.generation;
+    }
+
+    /**
+    * Marks the distance of a vertex as final.
+    * @param v the vertex id
+    */
+    public void settle(int v) {
+        this.settled[v] = this.generation;
+        this.settledCount++;
+    }
+
+    /**
+    * @return the number of vertices settled since the last reset
+    */
+    public int settledCount() {
+        return this.settledCount;
+    }
+}
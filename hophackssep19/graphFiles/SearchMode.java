@@ -0,0 +1,38 @@
+package graphFiles;
+
+/**
+ * Shortest path algorithms that StreetSearch can route with.
+ */
+public enum SearchMode {
+
+    /** Plain Dijkstra, expands the frontier in every direction. */
+    DIJKSTRA,
+
+    /** A* guided by the straight line distance to the destination. */
+    ASTAR,
+
+    /** A* guided by precomputed distances from and to landmark vertices. */
+    ALT,
+
+    /** Dijkstra from both ends at once, meeting in the middle. */
+    BIDIRECTIONAL,
+
+    /** Bidirectional search with the A* estimate split between both sides. */
+    BIDIRECTIONAL_ASTAR,
+
+    /** Upward search over a precomputed contraction hierarchy. */
+    HIERARCHY,
+
+    /** Search over the customizable cell overlay, in full only in the cells of both ends. */
+    OVERLAY;
+
+    /**
+     * Looks up a mode by its name, ignoring case.
+     * @param name the name of the mode, e.g. "astar"
+     * @return the matching mode
+     * @throws IllegalArgumentException if no mode has the given name
+     */
+    public static SearchMode parse(String name) {
+        return SearchMode.valueOf(name.trim().toUpperCase());
+    }
+}
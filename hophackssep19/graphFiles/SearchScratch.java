@@ -0,0 +1,85 @@
+package graphFiles;
+
+/**
+* Search scratch space of one thread, kept apart from the routers, overlays
+* and hierarchies that search with it. Every crime update publishes new ones
+* over the same vertices, and they find the scratch space the ones before
+* them used on the thread, so queries keep allocating nothing however often
+* the weights change. A thread keeps scratch space for a few vertex counts,
+* dropping the oldest when a map of yet another size is searched.
+*/
+final class SearchScratch {
+
+    // the searches that keep a context, one slot each so they never share one
+    static final int ROUTER_FORWARD = 0;
+    static final int ROUTER_BACKWARD = 1;
+    static final int OVERLAY_SEARCH = 2;
+    static final int OVERLAY_CELL = 3;
+    static final int HIERARCHY_FORWARD = 4;
+    static final int HIERARCHY_BACKWARD = 5;
+    private static final int SLOTS = 6;
+    // vertex counts a thread keeps scratch space for
+    private static final int GRAPHS = 4;
+
+    private static final ThreadLocal<SearchScratch[]> POOL = ThreadLocal.withInitial(() -> new SearchScratch[0]);
+
+    private final int vertexCount;
+    private final SearchContext[] contexts;
+    private long[] arrival;
+    private ParetoRouter.Labels labels;
+
+    private SearchScratch(int vertexCount) {
+        this.vertexCount = vertexCount;
+        this.contexts = new SearchContext[SLOTS];
+    }
+
+    /**
+    * @param vertexCount the number of vertices of the graph searched
+    * @return the scratch space of the calling thread for graphs of that size
+    */
+    static SearchScratch of(int vertexCount) {
+        SearchScratch[] pool = POOL.get();
+        for (SearchScratch s : pool) {
+            if (s.vertexCount == vertexCount) {
+                return s;
+            }
+        }
+        //newest first, the oldest falls off the end
+        SearchScratch[] grown = new SearchScratch[Math.min(pool.length + 1, GRAPHS)];
+        grown[0] = new SearchScratch(vertexCount);
+        System.arraycopy(pool, 0, grown, 1, grown.length - 1);
+        POOL.set(grown);
+        return grown[0];
+    }
+
+    /**
+    * @param slot the search the context is for
+    * @return the context of that search
+    */
+    SearchContext context(int slot) {
+        if (this.contexts[slot] == null) {
+            this.contexts[slot] = new SearchContext(this.vertexCount);
+        }
+        return this.contexts[slot];
+    }
+
+    /**
+    * @return the arrival time of every vertex of a time dependent search
+    */
+    long[] arrival() {
+        if (this.arrival == null) {
+            this.arrival = new long[this.vertexCount];
+        }
+        return this.arrival;
+    }
+
+    /**
+    * @return the label pool of a Pareto search
+    */
+    ParetoRouter.Labels labels() {
+        if (this.labels == null) {
+            this.labels = new ParetoRouter.Labels(this.vertexCount);
+        }
+        return this.labels;
+    }
+}
@@ -0,0 +1,487 @@
+package graphFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+* Reader for ESRI shapefiles of polyline roads, such as the bundled
+* StreetMap2000 map. The .shp file is mapped into memory, and the record
+* offsets of the .shx index next to it let the points of every record be
+* copied out in parallel.
+*
+* Polylines are split into roads at their ends and at every point they share
+* with another polyline, so roads only meet at intersections, and each road
+* keeps the shape points between its two ends. The graph holds one road
+* between two vertices, so a loop, or a road whose ends another road already
+* joins, is cut again at its middle shape point, or halfway if it is
+* straight. A road weighs its length along
+* the shape in feet, like the roads of the text maps, and is named by a
+* character field of the .dbf table next to the .shp, or by its record number
+* if there is no table.
+*/
+public final class ShapefileReader implements RoadSource {
+
+    private static final int FILE_CODE = 9994;
+    private static final int HEADER = 100;
+    private static final int NULL_SHAPE = 0;
+    // polylines, and polylines with heights or measures after their points
+    private static final int POLYLINE = 3;
+    private static final int POLYLINE_Z = 13;
+    private static final int POLYLINE_M = 23;
+    private static final double EARTH_RADIUS = 6371000.0;
+    private static final double FEET_PER_METER = 3.28084;
+    // coordinates are compared at a tenth of a micro degree, about a centimeter
+    private static final double KEY_SCALE = 1e7;
+
+    // every point of every record, the parts of record r are partStart[partIndex[r]]
+    // up to partStart[partIndex[r + 1]], and each part ends where the next starts
+    private double[] pointLon;
+    private double[] pointLat;
+    private int[] partStart;
+    private int[] partIndex;
+    private String[] recordName;
+
+    private double[] lon = new double[1024];
+    private double[] lat = new double[1024];
+    private int vertexCount = 0;
+    private int[] from = new int[1024];
+    private int[] to = new int[1024];
+    private double[] weight = new double[1024];
+    private int[] record = new int[1024];
+    // shape points between the ends of road e are shapeStart[e] up to shapeStart[e + 1]
+    private int[] shapeStart = new int[1025];
+    private double[] shapeLon = new double[1024];
+    private double[] shapeLat = new double[1024];
+    private int edgeCount = 0;
+    // the point and the length in feet from its start of every point of the road being cut
+    private int[] piece;
+    private double[] pieceFeet;
+    // the pairs of vertices a road joins already
+    private LongIntHashMap joined;
+
+    /**
+    * Reads a shapefile, naming roads by the first character field of its table.
+    * @param file the .shp file
+    * @throws IOException if the file can not be read or does not hold polylines
+    */
+    public ShapefileReader(String file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+    * Reads a shapefile.
+    * @param file the .shp file
+    * @param nameField the field of the .dbf table that names the roads, or null for
+    * the first character field
+    * @throws IOException if the file can not be read or does not hold polylines
+    */
+    public ShapefileReader(String file, String nameField) throws IOException {
+        ByteBuffer shp = map(Paths.get(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (shp.limit() < HEADER || shp.order(ByteOrder.BIG_ENDIAN).getInt(0) != FILE_CODE) {
+            throw new IOException(file + " is not a shapefile");
+        }
+        shp.order(ByteOrder.LITTLE_ENDIAN);
+        int type = shp.getInt(32);
+        if (type != POLYLINE && type != POLYLINE_Z && type != POLYLINE_M) {
+            throw new IOException(file + " does not hold polylines");
+        }
+
+        int[] offset = this.recordOffsets(file, shp);
+        this.readRecords(file, shp, offset);
+        this.recordName = names(sibling(file, ".dbf"), nameField, offset.length);
+        this.split();
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return map;
+    }
+
+    //the file next to a .shp file with another extension
+    private static Path sibling(String file, String extension) {
+        int dot = file.lastIndexOf('.');
+        return Paths.get((dot > file.lastIndexOf('/') ? file.substring(0, dot) : file) + extension);
+    }
+
+    //byte offset of every record, from the .shx index or by walking the .shp if there is none
+    private int[] recordOffsets(String file, ByteBuffer shp) throws IOException {
+        Path index = sibling(file, ".shx");
+        if (Files.exists(index)) {
+            ByteBuffer shx = map(index).order(ByteOrder.BIG_ENDIAN);
+            int[] offset = new int[Math.max(0, (shx.limit() - HEADER) / 8)];
+            for (int r = 0; r < offset.length; r++) {
+                //offsets are counted in 16 bit words
+                offset[r] = 2 * shx.getInt(HEADER + 8 * r);
+            }
+            return offset;
+        }
+        int[] offset = new int[1024];
+        int count = 0;
+        for (int pos = HEADER; pos + 8 <= shp.limit(); pos += 8 + 2 * Integer.reverseBytes(shp.getInt(pos + 4))) {
+            if (count == offset.length) {
+                offset = Arrays.copyOf(offset, count * 2);
+            }
+            offset[count++] = pos;
+        }
+        return Arrays.copyOf(offset, count);
+    }
+
+    //checks every record and counts its parts and points, then copies the points of all records in parallel
+    private void readRecords(String file, ByteBuffer shp, int[] offset) throws IOException {
+        int n = offset.length;
+        int[] pointIndex = new int[n + 1];
+        this.partIndex = new int[n + 1];
+        for (int r = 0; r < n; r++) {
+            int o = offset[r];
+            if (o < HEADER || o + 12 > shp.limit()) {
+                throw new IOException(file + ": record " + (r + 1) + " is outside the file");
+            }
+            int end = o + 8 + 2 * Integer.reverseBytes(shp.getInt(o + 4));
+            int parts = 0;
+            int points = 0;
+            if (shp.getInt(o + 8) != NULL_SHAPE) {
+                parts = o + 52 <= end ? shp.getInt(o + 44) : -1;
+                points = o + 52 <= end ? shp.getInt(o + 48) : -1;
+                if (parts < 0 || points < 0 || end > shp.limit()
+                    || (long) o + 52 + 4L * parts + 16L * points > end) {
+                    throw new IOException(file + ": record " + (r + 1) + " is not a polyline");
+                }
+            }
+            this.partIndex[r + 1] = this.partIndex[r] + parts;
+            pointIndex[r + 1] = pointIndex[r] + points;
+        }
+
+        this.pointLon = new double[pointIndex[n]];
+        this.pointLat = new double[pointIndex[n]];
+        this.partStart = new int[this.partIndex[n] + 1];
+        this.partStart[this.partIndex[n]] = pointIndex[n];
+        boolean[] bad = new boolean[1];
+        //each record fills its own ranges of the arrays, and reads the mapped file by absolute position only
+        IntStream.range(0, n).parallel().forEach(r -> {
+            int parts = this.partIndex[r + 1] - this.partIndex[r];
+            int points = pointIndex[r + 1] - pointIndex[r];
+            int at = offset[r] + 52;
+            for (int p = 0; p < parts; p++) {
+                int first = shp.getInt(at + 4 * p);
+                int next = p + 1 < parts ? shp.getInt(at + 4 * p + 4) : points;
+                if (first < 0 || first >= next || next > points) {
+                    bad[0] = true;
+                }
+                this.partStart[this.partIndex[r] + p] = pointIndex[r] + first;
+            }
+            at += 4 * parts;
+            for (int k = 0; k < points; k++) {
+                this.pointLon[pointIndex[r] + k] = shp.getDouble(at + 16 * k);
+                this.pointLat[pointIndex[r] + k] = shp.getDouble(at + 16 * k + 8);
+            }
+        });
+        if (bad[0]) {
+            throw new IOException(file + ": a polyline has parts out of order");
+        }
+    }
+
+    //names every record by a character field of the table, or by its number if there is no table
+    private static String[] names(Path table, String nameField, int records) throws IOException {
+        String[] name = new String[records];
+        for (int r = 0; r < records; r++) {
+            name[r] = Integer.toString(r + 1);
+        }
+        if (!Files.exists(table)) {
+            return name;
+        }
+        ByteBuffer dbf = map(table).order(ByteOrder.LITTLE_ENDIAN);
+        int rows = Math.min(records, dbf.getInt(4));
+        int headerLength = dbf.getShort(8) & 0xffff;
+        int rowLength = dbf.getShort(10) & 0xffff;
+        int fieldStart = 1;
+        int fieldLength = -1;
+        for (int at = 32; at + 32 <= headerLength && dbf.get(at) != 0x0D; at += 32) {
+            byte[] title = new byte[11];
+            dbf.position(at);
+            dbf.get(title);
+            int end = 0;
+            while (end < title.length && title[end] != 0) {
+                end++;
+            }
+            String field = new String(title, 0, end, StandardCharsets.US_ASCII).trim();
+            int length = dbf.get(at + 16) & 0xff;
+            if (dbf.get(at + 11) == 'C' && (nameField == null || nameField.equalsIgnoreCase(field))) {
+                fieldLength = length;
+                break;
+            }
+            fieldStart += length;
+        }
+        if (fieldLength < 0) {
+            throw new IOException(table + " has no character field " + (nameField == null ? "" : nameField));
+        }
+
+        //names repeat along a street, so equal names share one String
+        Map<String, String> shared = new HashMap<>();
+        byte[] value = new byte[fieldLength];
+        for (int r = 0; r < rows; r++) {
+            dbf.position(headerLength + r * rowLength + fieldStart);
+            dbf.get(value);
+            String word = new String(value, StandardCharsets.ISO_8859_1).trim().replace(' ', '_');
+            if (!word.isEmpty()) {
+                String known = shared.putIfAbsent(word, word);
+                name[r] = known == null ? word : known;
+            }
+        }
+        return name;
+    }
+
+    //cuts every part into roads at its ends and at the points other polylines also pass through
+    private void split() {
+        int points = this.pointLon.length;
+        LongIntHashMap slots = new LongIntHashMap(points);
+        int[] slot = new int[points];
+        int[] uses = new int[points];
+        int slotCount = 0;
+        int longest = 0;
+        for (int p = 0; p + 1 < this.partStart.length; p++) {
+            longest = Math.max(longest, this.partStart[p + 1] - this.partStart[p]);
+            long previous = 0;
+            for (int k = this.partStart[p]; k < this.partStart[p + 1]; k++) {
+                long key = key(this.pointLon[k], this.pointLat[k]);
+                //a point repeated right after itself is dropped
+                if (k > this.partStart[p] && key == previous) {
+                    slot[k] = -1;
+                    continue;
+                }
+                previous = key;
+                int s = slots.putIfAbsent(key, slotCount);
+                if (s < 0) {
+                    s = slotCount++;
+                }
+                slot[k] = s;
+                uses[s]++;
+            }
+        }
+
+        int[] vertexOf = new int[slotCount];
+        Arrays.fill(vertexOf, -1);
+        this.piece = new int[longest];
+        this.pieceFeet = new double[longest];
+        this.joined = new LongIntHashMap(points);
+        for (int r = 0; r + 1 < this.partIndex.length; r++) {
+            for (int p = this.partIndex[r]; p < this.partIndex[r + 1]; p++) {
+                int first = this.partStart[p];
+                int last = this.partStart[p + 1] - 1;
+                while (slot[last] < 0) {
+                    last--;
+                }
+                if (last == first) {
+                    continue;
+                }
+                this.piece[0] = first;
+                this.pieceFeet[0] = 0;
+                int count = 1;
+                for (int k = first + 1; k <= last; k++) {
+                    if (slot[k] < 0) {
+                        continue;
+                    }
+                    this.piece[count] = k;
+                    this.pieceFeet[count] = this.pieceFeet[count - 1] + this.feet(this.piece[count - 1], k);
+                    count++;
+                    if (k == last || uses[slot[k]] > 1) {
+                        this.cut(slot, vertexOf, r, 0, count - 1);
+                        this.piece[0] = k;
+                        this.pieceFeet[0] = 0;
+                        count = 1;
+                    }
+                }
+            }
+        }
+        this.piece = null;
+        this.pieceFeet = null;
+        this.joined = null;
+    }
+
+    //adds the road from point a to point b of the piece, cut in two if it is a loop or its ends are joined
+    private void cut(int[] slot, int[] vertexOf, int r, int a, int b) {
+        int f = this.vertex(vertexOf, slot[this.piece[a]], this.piece[a]);
+        int t = this.vertex(vertexOf, slot[this.piece[b]], this.piece[b]);
+        double length = this.pieceFeet[b] - this.pieceFeet[a];
+        if (f != t && this.joined.putIfAbsent(((long) Math.min(f, t) << 32) | Math.max(f, t), 0) < 0) {
+            int shapeMark = this.shapeStart[this.edgeCount];
+            for (int i = a + 1; i < b; i++) {
+                this.addShapePoint(this.piece[i]);
+            }
+            this.addRoad(f, t, length, r, shapeMark);
+        } else if (b - a > 1) {
+            int middle = (a + b) / 2;
+            this.cut(slot, vertexOf, r, a, middle);
+            this.cut(slot, vertexOf, r, middle, b);
+        } else if (f != t) {
+            int half = this.addVertex((this.pointLon[this.piece[a]] + this.pointLon[this.piece[b]]) / 2,
+                                      (this.pointLat[this.piece[a]] + this.pointLat[this.piece[b]]) / 2);
+            this.addRoad(f, half, length / 2, r, this.shapeStart[this.edgeCount]);
+            this.addRoad(half, t, length / 2, r, this.shapeStart[this.edgeCount]);
+        }
+    }
+
+    private static long key(double lo, double la) {
+        return (Math.round(lo * KEY_SCALE) << 32) ^ (Math.round(la * KEY_SCALE) & 0xFFFFFFFFL);
+    }
+
+    //length in feet of the straight piece between two points
+    private double feet(int a, int b) {
+        double x = Math.toRadians(this.pointLon[b] - this.pointLon[a])
+                   * Math.cos(Math.toRadians((this.pointLat[a] + this.pointLat[b]) / 2));
+        double y = Math.toRadians(this.pointLat[b] - this.pointLat[a]);
+        return EARTH_RADIUS * Math.sqrt(x * x + y * y) * FEET_PER_METER;
+    }
+
+    //the vertex of a slot, added at the coordinates of point k when first used
+    private int vertex(int[] vertexOf, int s, int k) {
+        if (vertexOf[s] < 0) {
+            vertexOf[s] = this.addVertex(this.pointLon[k], this.pointLat[k]);
+        }
+        return vertexOf[s];
+    }
+
+    private int addVertex(double lo, double la) {
+        if (this.vertexCount == this.lon.length) {
+            int size = this.lon.length * 2;
+            this.lon = Arrays.copyOf(this.lon, size);
+            this.lat = Arrays.copyOf(this.lat, size);
+        }
+        this.lon[this.vertexCount] = lo;
+        this.lat[this.vertexCount] = la;
+        return this.vertexCount++;
+    }
+
+    private void addShapePoint(int k) {
+        int i = this.shapeStart[this.edgeCount]++;
+        if (i == this.shapeLon.length) {
+            this.shapeLon = Arrays.copyOf(this.shapeLon, i * 2);
+            this.shapeLat = Arrays.copyOf(this.shapeLat, i * 2);
+        }
+        this.shapeLon[i] = this.pointLon[k];
+        this.shapeLat[i] = this.pointLat[k];
+    }
+
+    //ends the road whose shape points were added since shapeMark
+    private void addRoad(int f, int t, double length, int r, int shapeMark) {
+        int shapeEnd = this.shapeStart[this.edgeCount];
+        if (this.edgeCount + 1 == this.from.length) {
+            int size = this.from.length * 2;
+            this.from = Arrays.copyOf(this.from, size);
+            this.to = Arrays.copyOf(this.to, size);
+            this.weight = Arrays.copyOf(this.weight, size);
+            this.record = Arrays.copyOf(this.record, size);
+            this.shapeStart = Arrays.copyOf(this.shapeStart, size + 1);
+        }
+        this.from[this.edgeCount] = f;
+        this.to[this.edgeCount] = t;
+        this.weight[this.edgeCount] = length;
+        this.record[this.edgeCount] = r;
+        this.shapeStart[this.edgeCount] = shapeMark;
+        this.edgeCount++;
+        this.shapeStart[this.edgeCount] = shapeEnd;
+    }
+
+    @Override
+    public int vertexCount() {
+        return this.vertexCount;
+    }
+
+    @Override
+    public String vertexName(int v) {
+        return this.lon[v] + "," + this.lat[v];
+    }
+
+    @Override
+    public double lon(int v) {
+        return this.lon[v];
+    }
+
+    @Override
+    public double lat(int v) {
+        return this.lat[v];
+    }
+
+    @Override
+    public int edgeCount() {
+        return this.edgeCount;
+    }
+
+    @Override
+    public int from(int e) {
+        return this.from[e];
+    }
+
+    @Override
+    public int to(int e) {
+        return this.to[e];
+    }
+
+    @Override
+    public double weight(int e) {
+        return this.weight[e];
+    }
+
+    @Override
+    public String name(int e) {
+        return this.recordName[this.record[e]];
+    }
+
+    /**
+    * @param e the road number
+    * @return the number of the shapefile record the road was cut from, from 0
+    */
+    public int record(int e) {
+        return this.record[e];
+    }
+
+    /**
+    * @param e the road number
+    * @return the index of the first shape point between the ends of the road
+    */
+    @Override
+    public int shapeStart(int e) {
+        return this.shapeStart[e];
+    }
+
+    /**
+    * @param e the road number
+    * @return one past the index of the last shape point between the ends of the road
+    */
+    @Override
+    public int shapeEnd(int e) {
+        return this.shapeStart[e + 1];
+    }
+
+    /**
+    * @param i the index of a shape point
+    * @return the longitude of the point
+    */
+    @Override
+    public double shapeLon(int i) {
+        return this.shapeLon[i];
+    }
+
+    /**
+    * @param i the index of a shape point
+    * @return the latitude of the point
+    */
+    @Override
+    public double shapeLat(int i) {
+        return this.shapeLat[i];
+    }
+}
@@ -5,7 +5,9 @@ import exceptions.PositionException;
 import exceptions.RemovalException;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
 * This is an implementation of a directed graph using incidence lists for sparse graphs.
@@ -19,14 +21,14 @@ public class SparseGraph<V, E> implements Graph<V, E> {
     */
     private final class VertexNode<V> implements Vertex<V> {
         V data;
-        V lon;
-        V lat;
+        double lon;
+        double lat;
         Graph<V, E> owner;
         List<Edge<E>> out;
         List<Edge<E>> in;
         Object pathInfo;
 
-        VertexNode(V v, V lo, V la) {
+        VertexNode(V v, double lo, double la) {
             this.data = v;
             this.lon = lo;
             this.lat = la;
@@ -48,14 +50,14 @@ public class SparseGraph<V, E> implements Graph<V, E> {
         /*
         * @return the longitude value
         */
-        public V lon() {
+        public double lon() {
             return this.lon;
         }
 
         /**
         * @return the latittude value
         */
-        public V lat() {
+        public double lat() {
             return this.lat;
         }
     }
@@ -149,7 +151,7 @@ public class SparseGraph<V, E> implements Graph<V, E> {
      * @param v the vertex in the graph.
      * @return the longitude value of the vertex.
      */
-    public V getLon(Vertex<V> v) {
+    public double getLon(Vertex<V> v) {
         VertexNode<V> ver = this.convert(v);
         return ver.lon();
     }
@@ -159,7 +161,7 @@ public class SparseGraph<V, E> implements Graph<V, E> {
      * @param v the vertex in the graph.
      * @return the latitude value of the vertex.
      */
-    public V getLat(Vertex<V> v) {
+    public double getLat(Vertex<V> v) {
         VertexNode<V> ver = this.convert(v);
         return ver.lat();
     }
@@ -245,8 +247,28 @@ public class SparseGraph<V, E> implements Graph<V, E> {
         }
     }
 
+    /**
+    * Inserts a vertex whose coordinates are written out, such as "-76.6063".
+    * @param v the element of the vertex
+    * @param lo the longitude of the vertex
+    * @param la the latitude of the vertex
+    * @return the vertex position created
+    * @throws NumberFormatException if either coordinate is not a number
+    */
     @Override
     public Vertex<V> insert(V v, V lo, V la) {
+        return this.insert(v, Double.parseDouble(String.valueOf(lo)), Double.parseDouble(String.valueOf(la)));
+    }
+
+    /**
+    * Inserts a vertex at a position. The coordinates are kept as primitive
+    * doubles, so reading them back never parses.
+    * @param v the element of the vertex
+    * @param lo the longitude of the vertex
+    * @param la the latitude of the vertex
+    * @return the vertex position created
+    */
+    public Vertex<V> insert(V v, double lo, double la) {
         VertexNode<V> node = new VertexNode(v, lo, la);
         node.owner = this;
         this.vertices.add(node);
@@ -283,11 +305,11 @@ public class SparseGraph<V, E> implements Graph<V, E> {
         }
 
         //checks the list of edges associated with one of the given vertices for potential duplicate value.
+        //every edge in those lists belongs to this graph, so the ends are compared without converting
         for (int i = 0; i < check.size(); i++) {
-            VertexNode<V> f1 = this.convert(this.from(check.get(i)));
-            VertexNode<V> t1 = this.convert(this.to(check.get(i)));
-
-            if (f1 == f && t1 == t) {
+            @SuppressWarnings("unchecked")
+            EdgeNode<E> other = (EdgeNode<E>) check.get(i);
+            if (other.from == f && other.to == t) {
                 throw new LoopException();
             }
         }
@@ -299,6 +321,95 @@ public class SparseGraph<V, E> implements Graph<V, E> {
         return node;
     }
 
+    /**
+    * Packs the ids of an edge's ends into one key.
+    * @param from the index of the start vertex
+    * @param to the index of the end vertex
+    * @return the key of the vertex pair
+    */
+    private static long pair(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    /**
+    * Inserts many edges in one pass. Vertices are given by their index in
+    * getVertices(). Self-loops and edges that duplicate an existing or an earlier
+    * edge are skipped instead of throwing, found through a hash of the vertex index
+    * pair rather than by scanning incidence lists. Every incidence list is grown
+    * once to its final size before the edges are added.
+    * @param from the index of the start vertex of each edge
+    * @param to the index of the end vertex of each edge
+    * @param data the element of each edge
+    * @param info the path information of each edge, or null for none
+    * @param count the number of edges to read from the arrays
+    * @return the number of edges inserted
+    * @throws PositionException if a vertex index is out of range
+    */
+    public int insertAll(int[] from, int[] to, E[] data, Object[] info, int count)
+            throws PositionException {
+        int n = this.vertices.size();
+        LongIntHashMap seen = new LongIntHashMap(this.edges.size() + count);
+
+        //remembers the edges already in the graph
+        if (!this.edges.isEmpty()) {
+            Map<Vertex<V>, Integer> ids = new IdentityHashMap<>();
+            for (int i = 0; i < n; i++) {
+                ids.put(this.vertices.get(i), i);
+            }
+            for (Edge<E> e : this.edges) {
+                EdgeNode<E> node = this.convert(e);
+                seen.putIfAbsent(pair(ids.get(node.from), ids.get(node.to)), 0);
+            }
+        }
+
+        //keeps the first copy of every edge and counts the degrees it adds
+        boolean[] keep = new boolean[count];
+        int[] outDegree = new int[n];
+        int[] inDegree = new int[n];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int f = from[i];
+            int t = to[i];
+            if (f < 0 || f >= n || t < 0 || t >= n) {
+                throw new PositionException();
+            }
+            if (f == t || seen.putIfAbsent(pair(f, t), i) >= 0) {
+                continue;
+            }
+            keep[i] = true;
+            outDegree[f]++;
+            inDegree[t]++;
+            kept++;
+        }
+
+        //sizes every list once
+        ((ArrayList<Edge<E>>) this.edges).ensureCapacity(this.edges.size() + kept);
+        for (int v = 0; v < n; v++) {
+            VertexNode<V> node = this.convert(this.vertices.get(v));
+            if (outDegree[v] > 0) {
+                ((ArrayList<Edge<E>>) node.out).ensureCapacity(node.out.size() + outDegree[v]);
+            }
+            if (inDegree[v] > 0) {
+                ((ArrayList<Edge<E>>) node.in).ensureCapacity(node.in.size() + inDegree[v]);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            VertexNode<V> f = this.convert(this.vertices.get(from[i]));
+            VertexNode<V> t = this.convert(this.vertices.get(to[i]));
+            EdgeNode<E> node = new EdgeNode<>(data[i], f, t);
+            node.owner = this;
+            node.pathInfo = info == null ? null : info[i];
+            f.out.add(node);
+            t.in.add(node);
+            this.edges.add(node);
+        }
+        return kept;
+    }
+
     @Override
     public Vertex<V> remove(Vertex<V> v) throws PositionException, RemovalException {
         if (v == null) {
@@ -2,272 +2,1032 @@ package graphFiles;
 
 import java.applet.*;
 import java.awt.*;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Scanner;
-import java.util.Comparator;
-import exceptions.LoopException;
 
+/**
+* Loads the street map, folds crime into the edge weights and answers route queries.
+* Queries read one immutable View, the vertex names, spatial indexes and routers
+* of one map and one set of weights, and keep their search state in per-thread
+* contexts, so every query may be called from many threads at once. Loading and
+* crime updates build new weights and indexes under the lock and then publish
+* a fresh view as a whole.
+* The weight of a road is always its length plus the penalty of the crimes on
+* it, so a crime update only recomputes the roads that got new crimes.
+*/
 public final class StreetSearch {
 
-    private static final double MAX_WEIGHT = 1e8;
     private static final int CHAR_INDEX = 49;
+    // about 200 meters across, a few blocks of streets per cell
+    private static final double GRID_CELL = 0.002;
+    // most vertices in one overlay cell, a few dozen cells over the city
+    private static final int CELL_SIZE = 256;
+    // landmarks the command line uses for ALT
+    private static final int LANDMARKS = 16;
+    // most routes a vertex keeps in a Pareto query
+    private static final int PARETO_LABELS = 64;
+    // how much heavier and how much alike the alternative routes may be
+    private static final double ALTERNATIVE_STRETCH = 0.25;
+    private static final double ALTERNATIVE_OVERLAP = 0.5;
+    // departure of a route that weighs crime the same at every hour
+    private static final long ANY_TIME = Long.MIN_VALUE;
+    // crime feed records snapped per batch while the feed is read
+    private static final int FEED_BATCH = 4096;
 
-    private static class LoadedVertex {
-        Vertex<String> vert;
-        double weight;
-        boolean visited;
+    private final Map<String, Integer> vertices;
+    private final SparseGraph<String, String> graph;
+    // spatial indexes used to snap crimes and trip ends, rebuilt when roads are loaded
+    private Map<String, Integer> names;
+    private EdgeGeometry geometry;
+    private EdgeGrid edgeGrid;
+    private VertexKdTree vertexTree;
+    // road lengths and crime counters by edge id of the published graph
+    private double[] baseWeights;
+    private EdgeCrimes crimes;
+    // the counters the map files came with, and every crime added since with its road
+    private EdgeCrimes loadedCrimes;
+    private CrimeStore history;
+    // the part of the history counted, set by recountCrimes
+    private long countFrom;
+    private long countUntil;
+    private int countMask;
+    // crime scores fading with age, or null while every crime counts in full
+    private DecayedCrimes decayed;
+    // cell cliques customized for the weights about to be published
+    private CellOverlay overlay;
+    // ALT tables for the weights about to be published, or null until useLandmarks
+    private Landmarks landmarks;
+    // hourly crime shares of the roads, or null until useProfile
+    private CrimeProfile profile;
+    // everything queries read, swapped as a whole whenever the roads or weights change
+    private volatile View view;
+    private final List<WeightListener> listeners;
 
-        LoadedVertex(Vertex<String> v) {
-            vert = v;
-            weight = MAX_WEIGHT;
-            visited = false;
+    /**
+    * Creates a search over an empty map.
+    */
+    public StreetSearch() {
+        this.vertices = new HashMap<>();
+        this.graph = new SparseGraph<>();
+        this.listeners = new ArrayList<>();
+        CompactGraph compact = CompactGraph.freeze(this.graph);
+        this.baseWeights = compact.weights();
+        this.crimes = new EdgeCrimes(compact.edgeCount());
+        this.loadedCrimes = this.crimes.copy();
+        this.history = new CrimeStore();
+        this.countEverything();
+        this.geometry = EdgeGeometry.straight(compact);
+        this.edgeGrid = new EdgeGrid(this.geometry, GRID_CELL);
+        this.index(compact);
+        this.publish(compact);
+    }
+
+    /**
+    * Rebuilds the vertex index and the cell partition over a newly loaded
+    * graph, the edge grid must already be rebuilt. Crime updates only change
+    * weights, so these stay valid until new roads are loaded and the overlay
+    * only has to be customized again.
+    * @param compact the graph about to be published
+    */
+    private void index(CompactGraph compact) {
+        this.names = Collections.unmodifiableMap(new HashMap<>(this.vertices));
+        this.vertexTree = new VertexKdTree(compact);
+        this.overlay = CellOverlay.customize(new CellPartition(compact, CELL_SIZE), compact);
+        this.landmarks = null;
+    }
+
+    /**
+    * Makes a graph the one new queries route on, the overlay and landmarks must
+    * already be updated for it. Queries already running finish on the graph they started with.
+    * @param compact the graph to publish
+    */
+    private void publish(CompactGraph compact) {
+        this.publish(new Router(compact, null, this.overlay, this.landmarks, this.profile),
+                     new ParetoRouter(compact, this.baseWeights, PARETO_LABELS));
+    }
+
+    /**
+    * Publishes routers together with the indexes of the roads they route on.
+    * @param r the router for new queries
+    * @param p the Pareto router over the same weights
+    */
+    private void publish(Router r, ParetoRouter p) {
+        this.view = new View(this.names, this.vertexTree, this.edgeGrid, this.geometry, r, p);
+    }
+
+    /**
+    * Everything a query reads, for one map and one set of weights. A query
+    * reads the published view once, so it never pairs the names or indexes of
+    * one map with the router of another.
+    */
+    private static final class View {
+
+        private final Map<String, Integer> vertices;
+        private final VertexKdTree vertexTree;
+        private final EdgeGrid edgeGrid;
+        private final EdgeGeometry geometry;
+        private final Router router;
+        private final ParetoRouter pareto;
+
+        private View(Map<String, Integer> vertices, VertexKdTree vertexTree, EdgeGrid edgeGrid,
+                     EdgeGeometry geometry, Router router, ParetoRouter pareto) {
+            this.vertices = vertices;
+            this.vertexTree = vertexTree;
+            this.edgeGrid = edgeGrid;
+            this.geometry = geometry;
+            this.router = router;
+            this.pareto = pareto;
+        }
+    }
+
+    /**
+    * @return the router new queries use
+    */
+    public Router getRouter() {
+        return this.view.router;
+    }
+
+    /**
+    * @return the shapes of the roads of the loaded map, for drawing routes
+    */
+    public EdgeGeometry getGeometry() {
+        return this.view.geometry;
+    }
+
+    /**
+    * Snaps a point to the closest vertex of the map.
+    * @param lon the longitude of the point
+    * @param lat the latitude of the point
+    * @return the closest vertex id, or -1 if the map is empty
+    */
+    public int nearestVertex(double lon, double lat) {
+        return this.view.vertexTree.nearest(lon, lat);
+    }
+
+    /**
+    * Finds the route between the vertices closest to two points.
+    * @param startLon the longitude of the start
+    * @param startLat the latitude of the start
+    * @param endLon the longitude of the end
+    * @param endLat the latitude of the end
+    * @param mode the search algorithm to use
+    * @return the route, or null if there is none
+    */
+    public Route route(double startLon, double startLat, double endLon, double endLat,
+                       SearchMode mode) {
+        View v = this.view;
+        return v.router.route(v.vertexTree.nearest(startLon, startLat), v.vertexTree.nearest(endLon, endLat),
+                              mode);
+    }
+
+    /**
+    * Finds the route between two points for a walk leaving at a given time,
+    * weighing each road by the crime at the hour it is reached. Needs the
+    * crime profiles of useProfile.
+    * @param startName the start coordinates
+    * @param endName the end coordinates
+    * @param departMillis the local time the walk starts, in milliseconds since 1970-01-01T00:00
+    * @return the route, or null if there is none
+    * @throws IllegalArgumentException if either point is not a coordinate pair
+    * @throws IllegalStateException if there are no crime profiles
+    */
+    public Route route(String startName, String endName, long departMillis) {
+        View v = this.view;
+        return v.router.route(vertexId(v, startName), vertexId(v, endName), departMillis);
+    }
+
+    /**
+    * Finds every route between two points that no other route beats on both
+    * road length and crime exposure, from the shortest to the safest.
+    * @param startName the start coordinates
+    * @param endName the end coordinates
+    * @return the routes, empty if there are none
+    * @throws IllegalArgumentException if either point is not a coordinate pair
+    */
+    public ParetoSet paretoRoutes(String startName, String endName) {
+        View v = this.view;
+        return v.pareto.route(vertexId(v, startName), vertexId(v, endName));
+    }
+
+    /**
+    * Finds every road reachable from a point within a budget of route
+    * weight, the crime penalties included.
+    * @param startName the start coordinates
+    * @param budget the largest route weight allowed
+    * @return the roads reached, in full or in part
+    * @throws IllegalArgumentException if the point is not a coordinate pair
+    */
+    public Isochrone isochrone(String startName, double budget) {
+        View v = this.view;
+        return v.router.isochrone(vertexId(v, startName), budget);
+    }
+
+    /**
+    * Computes the weight of the best route from every origin to every
+    * destination, the crime penalties included. Uses the hierarchy if one is
+    * attached with useHierarchy, which pays off for large matrices.
+    * @param origins the start coordinates
+    * @param destinations the end coordinates
+    * @return weight[i][j] from origins[i] to destinations[j], infinite if there is no route
+    * @throws IllegalArgumentException if any point is not a coordinate pair
+    */
+    public double[][] matrix(String[] origins, String[] destinations) {
+        View v = this.view;
+        int[] from = new int[origins.length];
+        int[] to = new int[destinations.length];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = vertexId(v, origins[i]);
+        }
+        for (int j = 0; j < to.length; j++) {
+            to[j] = vertexId(v, destinations[j]);
+        }
+        return v.router.matrix(from, to);
+    }
+
+    /**
+    * Finds up to k routes between two points, the shortest and others at most a
+    * quarter heavier that share at most half their weight with a route before them.
+    * @param startName the start coordinates
+    * @param endName the end coordinates
+    * @param k the most routes to return
+    * @return the routes, shortest first, empty if there are none
+    * @throws IllegalArgumentException if either point is not a coordinate pair
+    */
+    public Route[] alternatives(String startName, String endName, int k) {
+        View v = this.view;
+        return v.router.alternatives(vertexId(v, startName), vertexId(v, endName), k,
+                                     ALTERNATIVE_STRETCH, ALTERNATIVE_OVERLAP);
+    }
+
+    /**
+    * Finds the route between two points written as Longitude,Latitude pairs.
+    * Points that are not exactly a vertex of the map are snapped to the closest one.
+    * @param startName the start coordinates
+    * @param endName the end coordinates
+    * @param mode the search algorithm to use
+    * @return the route, or null if there is none
+    * @throws IllegalArgumentException if either point is not a coordinate pair
+    */
+    public Route route(String startName, String endName, SearchMode mode) {
+        View v = this.view;
+        return v.router.route(vertexId(v, startName), vertexId(v, endName), mode);
+    }
+
+    //finds the vertex of a view named by the coordinates, or the one closest to them
+    private static int vertexId(View v, String name) {
+        Integer id = v.vertices.get(name);
+        if (id != null) {
+            return id;
+        }
+        String[] position = name.split(",");
+        if (position.length != 2 || v.router.getGraph().vertexCount() == 0) {
+            throw new IllegalArgumentException();
+        }
+        try {
+            return v.vertexTree.nearest(Double.parseDouble(position[0].trim()),
+                                        Double.parseDouble(position[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException();
         }
+    }
 
-        void setVisited(boolean b) {
-            this.visited = b;
+    //print the path
+    private static void printPath(CompactGraph compact, Route path) {
+        System.out.println("Your safest path is: \n");
+        for (int i = 0; i < path.size(); i++) {
+            //need to figure out how to give coloquial directions using the latitude and longitude
+            System.out.println(compact.name(path.edge(i)));
         }
 
-        void setWeight(double w) {
-            this.weight = w;
+    }
+
+    //finds the shortest path
+    private void findShortestPath(String startName, String endName, SearchMode mode, long departMillis) {
+        View v = this.view;
+        Route path;
+        try {
+            if (departMillis == ANY_TIME) {
+                path = v.router.route(vertexId(v, startName), vertexId(v, endName), mode);
+            } else {
+                path = v.router.route(vertexId(v, startName), vertexId(v, endName), departMillis);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Start and End Coordinates must be Longitude,Latitude pairs");
+            return;
         }
+        if (path == null) {
+            System.out.println("No path found");
+            return;
+        }
+        printPath(v.router.getGraph(), path);
+        if (departMillis == ANY_TIME) {
+            System.out.println("\nSettled " + path.settled() + " vertices using " + mode);
+        } else {
+            System.out.println("\nSettled " + path.settled() + " vertices leaving at "
+                               + LocalDateTime.ofEpochSecond(departMillis / 1000, 0, ZoneOffset.UTC).toLocalTime());
+        }
+    }
 
-        boolean getVisited() {
-            return this.visited;
+    //prints every Pareto route, then the path of the safest
+    private void findParetoRoutes(String startName, String endName) {
+        View v = this.view;
+        ParetoSet routes;
+        try {
+            routes = v.pareto.route(vertexId(v, startName), vertexId(v, endName));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Start and End Coordinates must be Longitude,Latitude pairs");
+            return;
+        }
+        if (routes.size() == 0) {
+            System.out.println("No path found");
+            return;
         }
+        for (int i = 0; i < routes.size(); i++) {
+            System.out.printf("Route %d: length %.1f, crime %.1f, %d roads%n", i + 1,
+                              routes.distance(i), routes.exposure(i), routes.route(i).size());
+        }
+        System.out.println();
+        printPath(v.pareto.getGraph(), routes.safest());
+    }
 
-        double getWeight() {
-            return this.weight;
+    //prints the weight of every alternative route, then the path of the first
+    private void findAlternatives(String startName, String endName, int k) {
+        View v = this.view;
+        Route[] routes;
+        try {
+            routes = v.router.alternatives(vertexId(v, startName), vertexId(v, endName), k,
+                                           ALTERNATIVE_STRETCH, ALTERNATIVE_OVERLAP);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Start and End Coordinates must be Longitude,Latitude pairs");
+            return;
+        }
+        if (routes.length == 0) {
+            System.out.println("No path found");
+            return;
         }
+        for (int i = 0; i < routes.length; i++) {
+            System.out.printf("Route %d: weight %.1f, %d roads%n", i + 1,
+                              routes[i].weight(), routes[i].size());
+        }
+        System.out.println();
+        printPath(v.router.getGraph(), routes[0]);
     }
 
-    private static class StreetComparator implements Comparator<LoadedVertex> {
-        @Override
-        /**
-        * compares the provided loaded verticies based on the weight
-        * @param lv1 First loaded vertex to compare
-        * @param lv2 Second vertex to compare
-        * @return Int value based on comparison
-        *   if lv1 < lv2 return a negative value
-        *   if lv1 > lv2 returns a positive value
-        *   if lv1 == lv2 returns 0
-        */
-        public int compare(LoadedVertex lv1, LoadedVertex lv2) {
-            if (lv1.getWeight() < lv2.getWeight()) {
-                return -1;
+    //prints how many roads are reachable within the budget and the grid cells they cover
+    private void findReachable(String startName, double budget) {
+        View v = this.view;
+        Isochrone area;
+        try {
+            area = v.router.isochrone(vertexId(v, startName), budget);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Start Coordinates must be a Longitude,Latitude pair");
+            return;
+        }
+        int partial = 0;
+        for (int i = 0; i < area.size(); i++) {
+            if (area.fraction(i) < 1) {
+                partial++;
             }
-            else if (lv1.getWeight() > lv2.getWeight()) {
-                return 1;
+        }
+        double[] cells = area.cells(v.geometry, GRID_CELL);
+        System.out.println((area.size() - partial) + " roads reachable, " + partial + " in part, settled "
+                           + area.settled() + " vertices");
+        System.out.println("Covering " + cells.length / 2 + " cells of " + GRID_CELL + " degrees:");
+        for (int c = 0; c < cells.length; c += 2) {
+            System.out.printf("%.4f,%.4f%n", cells[c], cells[c + 1]);
+        }
+    }
+
+    /**
+    * Loads a map file and publishes it for routing. The file is either a text map
+    * with one road per line, a .shp shapefile of polyline roads or a snapshot
+    * written by saveSnapshot. Text maps and shapefiles add their roads to the
+    * roads loaded before, a snapshot is a whole map and must be the only one.
+    * Crimes added before are kept and snapped again, so they move to a new
+    * road where one is closer, and every crime counts again.
+    * @param file the map file
+    * @throws IOException if the file can not be read
+    * @throws IllegalStateException if a snapshot and other maps would be mixed
+    */
+    public synchronized void loadData(String file) throws IOException {
+        boolean isSnapshot = GraphSnapshot.isSnapshot(file);
+        //roads published but none in the sparse graph came from a snapshot, which has no vertex names to add to
+        if (view.router.getGraph().vertexCount() > 0 && (isSnapshot || graph.getVertices().isEmpty())) {
+            throw new IllegalStateException();
+        }
+        CompactGraph before = view.router.getGraph();
+        CompactGraph loaded;
+        if (isSnapshot) {
+            GraphSnapshot snapshot = GraphSnapshot.read(file);
+            loaded = snapshot.getGraph();
+            loadedCrimes = snapshot.getCrimes();
+            geometry = snapshot.getGeometry();
+        } else {
+            RoadSource roads = file.toLowerCase().endsWith(".shp") ? new ShapefileReader(file)
+                                                                   : new EdgeListReader(file);
+            int[] vertexOf = loadRoads(roads);
+            loaded = CompactGraph.freeze(graph);
+            //roads loaded before keep their counters under their new edge ids, new roads start without crime
+            loadedCrimes = loadedCrimes.renumber(edgeOf(before, loaded), loaded.edgeCount());
+            geometry = geometry.extend(loaded, roads, vertexOf);
+        }
+        baseWeights = loaded.weights();
+        edgeGrid = new EdgeGrid(geometry, GRID_CELL);
+        crimes = loadedCrimes.copy();
+        countEverything();
+        //a crime only moves to a new road, ties between the old ones stay as they were snapped
+        int[] edgeOf = edgeOf(before, loaded);
+        for (int i = 0; i < history.size(); i++) {
+            int closest = edgeGrid.nearestEdge(history.lon(i), history.lat(i));
+            if (history.edge(i) >= 0 && (closest < 0 || loaded.origin(closest) < edgeOf.length)) {
+                closest = edgeOf[history.edge(i)];
+            }
+            history.setEdge(i, closest);
+            if (closest >= 0) {
+                crimes.increment(closest, history.codeClass(i));
+            }
+        }
+        int[] counted = history.select(countFrom, countUntil, countMask);
+        if (decayed != null) {
+            decayed = decay(decayed.halfLife(), decayed.now(), counted);
+        }
+        if (profile != null) {
+            profile = CrimeProfile.build(baseWeights, history, counted, profile.buckets());
+        }
+        double[] weights = loaded.weights();
+        for (int e = 0; e < weights.length; e++) {
+            weights[e] += penalty(e);
+        }
+        CompactGraph compact = loaded.withWeights(weights);
+        index(compact);
+        publish(compact);
+    }
+
+    /**
+    * Registers a listener told about every later change of the edge weights.
+    * @param listener the listener to add
+    */
+    public synchronized void addWeightListener(WeightListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+    * Attaches a contraction hierarchy to the published graph so HIERARCHY queries
+    * can run. The hierarchy is read from the file if it was built for the current
+    * weights, otherwise it is built and written to the file for the next start.
+    * Any later change of the weights drops it again.
+    * @param file the hierarchy file
+    * @throws IOException if the file can not be written
+    */
+    public synchronized void useHierarchy(String file) throws IOException {
+        CompactGraph compact = view.router.getGraph();
+        ContractionHierarchy ch = null;
+        if (Files.exists(Paths.get(file))) {
+            try {
+                ch = ContractionHierarchy.read(file);
+            } catch (IOException e) {
+                ch = null;
             }
-            else {
-                return 0;
+        }
+        if (ch == null || !ch.matches(compact)) {
+            ch = ContractionHierarchy.build(compact);
+            ch.write(file);
+        }
+        publish(new Router(compact, ch, overlay, landmarks, profile), view.pareto);
+    }
+
+    /**
+    * Computes ALT landmarks for the published graph, or reads them from the file
+    * if it holds the same number of landmarks for the current weights, and
+    * writes them to the file otherwise. Later crime updates keep them current.
+    * @param file the landmark file, usually next to the map file
+    * @param count the number of landmarks
+    * @throws IOException if the file can not be written
+    */
+    public synchronized void useLandmarks(String file, int count) throws IOException {
+        CompactGraph compact = view.router.getGraph();
+        Landmarks lm = null;
+        if (Files.exists(Paths.get(file))) {
+            try {
+                lm = Landmarks.read(file, compact);
+            } catch (IOException e) {
+                lm = null;
             }
         }
+        if (lm == null || lm.count() != Math.min(count, compact.vertexCount())) {
+            lm = Landmarks.build(compact, count);
+            lm.write(file);
+        }
+        landmarks = lm;
+        publish(new Router(compact, view.router.getHierarchy(), overlay, landmarks, profile), view.pareto);
     }
 
+    /**
+    * Buckets the crimes of every road by the hour they happened, so routes can
+    * be asked for a departure time. The profiles follow every later crime update.
+    * @param buckets CrimeProfile.HOURS_OF_DAY or CrimeProfile.HOURS_OF_WEEK
+    */
+    public synchronized void useProfile(int buckets) {
+        profile = CrimeProfile.build(baseWeights, history, history.select(countFrom, countUntil, countMask),
+                                     buckets);
+        Router r = view.router;
+        publish(new Router(r.getGraph(), r.getHierarchy(), overlay, landmarks, profile), view.pareto);
+    }
 
+    /**
+    * Writes the published roads, their lengths, shapes and crime counters as
+    * a binary snapshot, which loadData reads back without parsing.
+    * @param file the snapshot file to write
+    * @throws IOException if the file can not be written
+    */
+    public synchronized void saveSnapshot(String file) throws IOException {
+        new GraphSnapshot(view.router.getGraph().withWeights(baseWeights), crimes, geometry).write(file);
+    }
 
-    private static Map<String, Vertex<String>> vertices = new HashMap<>();
-    private static SparseGraph<String, String> graph = new SparseGraph<>();
-    private static Map<Vertex<String>, LoadedVertex> pathDiscover = new HashMap<>();
-    private static PriorityQueue<LoadedVertex> pq = new PriorityQueue<LoadedVertex>(5, new StreetComparator());
+    // loads the roads read from a map file into the graphs, returns the graph vertex id of every reader vertex
+    private int[] loadRoads(RoadSource in) {
 
-    // arbitrary constructor
-    public StreetSearch() {}
+        //a vertex an earlier map already has is reused, so roads of different files join
+        int[] vertexOf = new int[in.vertexCount()];
+        for (int v = 0; v < in.vertexCount(); v++) {
+            String name = in.vertexName(v);
+            Integer id = vertices.get(name);
+            if (id == null) {
+                id = graph.getVertices().size();
+                graph.insert(name, in.lon(v), in.lat(v));
+                vertices.put(name, id);
+            }
+            vertexOf[v] = id;
+        }
 
+        //adds every road in both directions with one bulk insert
+        int count = 2 * in.edgeCount();
+        int[] from = new int[count];
+        int[] to = new int[count];
+        String[] names = new String[count];
+        Object[] weights = new Object[count];
+        for (int i = 0; i < in.edgeCount(); i++) {
+            from[2 * i] = vertexOf[in.from(i)];
+            to[2 * i] = vertexOf[in.to(i)];
+            from[2 * i + 1] = to[2 * i];
+            to[2 * i + 1] = from[2 * i];
+            names[2 * i] = in.name(i);
+            names[2 * i + 1] = in.name(i);
+            weights[2 * i] = in.weight(i);
+            weights[2 * i + 1] = weights[2 * i];
+        }
+        graph.insertAll(from, to, names, weights, count);
+        return vertexOf;
+    }
 
-    //gets the path
-    private static List<Edge<String>> getPath(Vertex<String> end, Vertex<String> start) {
-        if (graph.pathInfo(end) != null) {
-            List<Edge<String>> path = new ArrayList<>();
-            Vertex<String> curr = end;
-            Edge<String> road;
-            while (curr != start) {
-                road = (Edge<String>) graph.pathInfo(curr);
-                path.add(road);
-                curr = graph.from(road);
+    //the edge id in the second graph of every edge of the first, both frozen from the sparse graph
+    private static int[] edgeOf(CompactGraph before, CompactGraph after) {
+        int[] byOrigin = new int[after.edgeCount()];
+        for (int e = 0; e < after.edgeCount(); e++) {
+            byOrigin[after.origin(e)] = e;
+        }
+        int[] edgeOf = new int[before.edgeCount()];
+        for (int e = 0; e < edgeOf.length; e++) {
+            edgeOf[e] = byOrigin[before.origin(e)];
+        }
+        return edgeOf;
+    }
+
+    //snaps a crime of the history to its closest road and counts it there, returns the road or -1
+    private int addCrime(int record) {
+        int closest = edgeGrid.nearestEdge(history.lon(record), history.lat(record));
+        if (closest >= 0) {
+            history.setEdge(record, closest);
+            crimes.increment(closest, history.codeClass(record));
+            if (decayed != null) {
+                decayed.add(closest, history.codeClass(record), history.epochMillis(record));
             }
-            return path;
         }
-        return null;
+        return closest;
     }
 
-    //print the path
-    private static void printPath(List<Edge<String>> path, double distance) {
-        System.out.println("Your safest path is: \n");
-        for (int i = path.size() - 1; i >= 0; i--) {
-            //need to figure out how to give coloquial directions using the latitude and longitude
-            System.out.println(path.get(i).get());
+    /**
+    * Adds crimes to their closest roads, recomputes the weights of just those
+    * roads from their length and crime counters and publishes the new weights
+    * for routing. Only the overlay cells holding a reweighted road are
+    * customized again, only the landmark tables the reweighted roads lie on are
+    * recomputed, and the listeners are told which edges changed.
+    * @param crimesList the crimes to add
+    */
+    public synchronized void updateCrime(List<Crime> crimesList) {
+        int firstRecord = history.size();
+        int[] touched = new int[crimesList.size()];
+        int count = 0;
+        for (Crime crime : crimesList) {
+            //gets the incident code
+            String code = crime.getCrimeCode();
+            int codeMag = code.charAt(0) - CHAR_INDEX;
+            if (codeMag < 0 || codeMag >= EdgeCrimes.CATEGORIES) {
+                continue;
+            }
+            int record = history.add(crime.getLon(), crime.getLat(), CrimeBatch.code(code.charAt(0), code.charAt(1)),
+                                     localMillis(crime.getDate()), crime.getLocation(), null);
+            int closest = addCrime(record);
+            if (closest < 0) {
+                break;
+            }
+            touched[count++] = closest;
         }
+        profileSince(firstRecord);
+        reweight(touched, count);
+    }
 
+    /**
+    * Adds a batch of crimes read by CrimeFeedReader, the same way as
+    * updateCrime(List) but without a Crime object per record.
+    * @param batch the crimes to add
+    */
+    public synchronized void updateCrime(CrimeBatch batch) {
+        int[] touched = new int[batch.size()];
+        int count = 0;
+        int first = history.addAll(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            int closest = addCrime(first + i);
+            if (closest < 0) {
+                break;
+            }
+            touched[count++] = closest;
+        }
+        profileSince(first);
+        reweight(touched, count);
     }
 
-    //finds the shortest path
-    private static void findShortestPath(String startName, String endName) {
-        //get the start and end vertices from the map using names
-        Vertex<String> start = vertices.get(startName);
-        Vertex<String> end = vertices.get(endName);
-        double totalDist = -1;
-
-
-        LoadedVertex lCurr = new LoadedVertex(start);
-        lCurr.setWeight(0);
-        lCurr.setVisited(true);
-        pathDiscover.put(start, lCurr);
-        Vertex<String> vCurr = start;
-
-        while(!vCurr.equals(end) && vCurr != null) {
-            Iterable<Edge<String>> neighbors = graph.outgoing(vCurr);
-            lCurr = pathDiscover.get(vCurr);
-            double currDistance = lCurr.getWeight();
-
-            //iterate through each neighbhor
-            for (Edge<String> ed: neighbors) {
-                Vertex<String> to = graph.to(ed);
-                LoadedVertex tempLCurr = pathDiscover.get(to);
-
-                //goes to next edge if the to node is already getVisited
-                if (pathDiscover.containsKey(to) && tempLCurr.getVisited()) {
-                    continue;
-                }
-                double newWeight = currDistance + (double) graph.pathInfo(ed);
+    /**
+    * Streams a crime feed in the Open Baltimore JSON format, either the live
+    * feed from CrimeAPI.openFeed or a copy saved to disk. Records are snapped
+    * to their roads batch by batch while the feed is still being read and kept
+    * in the crime history, and the new weights are published once at the end.
+    * @param in the feed, left open
+    * @return the number of crimes added
+    * @throws IOException if the feed can not be read or is malformed
+    */
+    public synchronized int loadCrimes(InputStream in) throws IOException {
+        FeedSink sink = new FeedSink(view.router.getGraph().edgeCount());
+        int firstRecord = history.size();
+        int kept = CrimeFeedReader.read(in, sink, FEED_BATCH);
+        profileSince(firstRecord);
+        reweight(sink.touched, sink.count);
+        return kept;
+    }
 
-                //if the neighbor has not been assigned a weight
-                if (tempLCurr == null) {
-                    pathDiscover.put(to, new LoadedVertex(to));
-                    tempLCurr = pathDiscover.get(to);
-                    pq.add(tempLCurr);
-                }
+    //snaps feed batches as they arrive, listing every road touched once
+    private final class FeedSink implements CrimeSink {
+
+        private final boolean[] marked;
+        private int[] touched = new int[FEED_BATCH];
+        private int count = 0;
+
+        private FeedSink(int edgeCount) {
+            this.marked = new boolean[edgeCount];
+        }
 
-                //checks to see if the neighbor weight needs to be updated
-                lCurr = tempLCurr;
-                if (newWeight < lCurr.getWeight()) {
-                    lCurr.setWeight(newWeight);
-                    graph.pathInfo(to, ed);
+        @Override
+        public void accept(CrimeBatch batch) {
+            int first = history.addAll(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                int closest = addCrime(first + i);
+                if (closest < 0 || this.marked[closest]) {
+                    continue;
                 }
+                this.marked[closest] = true;
+                if (this.count == this.touched.length) {
+                    this.touched = Arrays.copyOf(this.touched, this.count * 2);
+                }
+                this.touched[this.count++] = closest;
             }
-            //takes the LoadedVertex with the lowest weight and checks to see if all options have been exhausted
-            lCurr = pq.poll();
-            if (lCurr == null) {
-                break;
+        }
+    }
+
+    /**
+    * Counts the crimes again, keeping only those added since the map was loaded
+    * that fall in a time window and crime class, on top of the counters the
+    * map file came with. The history remembers the road of every crime, so
+    * nothing is snapped again, and only roads whose weight changes are
+    * reweighted.
+    * @param from the earliest crime time kept, in local milliseconds since 1970-01-01T00:00
+    * @param until the first crime time after the window
+    * @param classMask the crime classes kept, see CrimeStore.classMask
+    */
+    public synchronized void recountCrimes(long from, long until, int classMask) {
+        countFrom = from;
+        countUntil = until;
+        countMask = classMask;
+        int[] selected = history.select(from, until, classMask);
+        EdgeCrimes counted = loadedCrimes.copy();
+        for (int i : selected) {
+            if (history.edge(i) >= 0) {
+                counted.increment(history.edge(i), history.codeClass(i));
             }
-            lCurr.setVisited(true);
-            vCurr = lCurr.vert;
         }
-        if (vCurr != null) {
-            totalDist = pathDiscover.get(end).getWeight();
+        crimes = counted;
+        if (decayed != null) {
+            decayed = decay(decayed.halfLife(), decayed.now(), selected);
+        }
+        if (profile != null) {
+            profile = CrimeProfile.build(baseWeights, history, selected, profile.buckets());
         }
-        //fetches the lowest weighted path detected
-        List<Edge<String>> path = getPath(end, start);
-        printPath(path, totalDist);
+        reweightAll();
     }
 
-    // adds vertex to HashMap vertices
-    private static Vertex<String> addVertex(String name) {
-        if (!vertices.containsKey(name)) {
-            String[] position = name.split(",");
-            Vertex<String> ver = graph.insert(name, position[0], position[1]);
-            vertices.put(name, ver);
+    //adds the crimes of the history from the given record on that fall in the counted part to the profiles
+    private void profileSince(int firstRecord) {
+        if (profile == null) {
+            return;
+        }
+        int[] records = new int[history.size() - firstRecord];
+        int count = 0;
+        for (int i = firstRecord; i < history.size(); i++) {
+            long millis = history.epochMillis(i);
+            if (millis >= countFrom && millis < countUntil && (countMask >>> history.codeClass(i) & 1) != 0) {
+                records[count++] = i;
+            }
         }
-        return vertices.get(name);
+        profile = profile.add(history, Arrays.copyOf(records, count));
     }
 
-    // loads data from text file into the graphs
-    private static void loadData(String file) throws FileNotFoundException {
-        Scanner in = new Scanner(new FileInputStream(new File(file)));
+    //counts the whole history again
+    private void countEverything() {
+        countFrom = Long.MIN_VALUE;
+        countUntil = Long.MAX_VALUE;
+        countMask = CrimeStore.ALL_CLASSES;
+    }
+
+    /**
+    * Makes crimes count less the older they are, halving every half life,
+    * from the time given on. The crimes the map file came with have no date
+    * and count as new at that time. Crimes added later count by their own date
+    * and advanceClock makes them all fade.
+    * @param halfLifeMillis the age in milliseconds at which a crime counts half
+    * @param nowMillis the current local time in milliseconds since 1970-01-01T00:00
+    */
+    public synchronized void useDecay(long halfLifeMillis, long nowMillis) {
+        decayed = decay(halfLifeMillis, nowMillis, history.select(countFrom, countUntil, countMask));
+        reweightAll();
+    }
 
-        while (in.hasNext()) {
-            String[] split = in.nextLine().split(" ");
-            String from = split[0];
-            String to = split[1];
-            double weight = Double.parseDouble(split[2]);
-            String edgeName = split[3];
+    /**
+    * Moves the clock crime fades by forward. Only roads that still have a
+    * crime score are reweighted, and roads whose crimes faded away go back to
+    * their length.
+    * @param nowMillis the current local time in milliseconds since 1970-01-01T00:00
+    */
+    public synchronized void advanceClock(long nowMillis) {
+        if (decayed == null) {
+            return;
+        }
+        int[] changed = decayed.advance(nowMillis);
+        reweight(changed, changed.length);
+    }
 
-            Vertex<String> f = addVertex(from);
-            Vertex<String> t = addVertex(to);
+    //scores the counters the map came with and the given records of the history
+    private DecayedCrimes decay(long halfLifeMillis, long nowMillis, int[] records) {
+        DecayedCrimes d = new DecayedCrimes(loadedCrimes.edgeCount(), halfLifeMillis, nowMillis);
+        for (int e = 0; e < loadedCrimes.edgeCount(); e++) {
+            for (int c = 0; c < EdgeCrimes.CATEGORIES; c++) {
+                for (int k = loadedCrimes.count(e, c); k > 0; k--) {
+                    d.add(e, c, 0);
+                }
+            }
+        }
+        for (int i : records) {
+            if (history.edge(i) >= 0) {
+                d.add(history.edge(i), history.codeClass(i), history.epochMillis(i));
+            }
+        }
+        return d;
+    }
 
-            // add roads
-            try {
-                Edge<String> fromTo = graph.insert(f, t, edgeName);
-                Edge<String> toFrom = graph.insert(t, f, edgeName);
+    //the weight crime adds to a road under the current model
+    private double penalty(int e) {
+        return decayed != null ? decayed.penalty(e) : crimes.penalty(e);
+    }
 
-                graph.pathInfo(fromTo, weight);
-                graph.pathInfo(toFrom, weight);
-            } catch (LoopException e) {
-                // do nothing if can't insert edge
+    //reweights every road whose weight differs from the published one
+    private void reweightAll() {
+        CompactGraph compact = view.router.getGraph();
+        int[] touched = new int[compact.edgeCount()];
+        int count = 0;
+        for (int e = 0; e < compact.edgeCount(); e++) {
+            if (baseWeights[e] + penalty(e) != compact.weight(e)) {
+                touched[count++] = e;
             }
         }
+        reweight(touched, count);
     }
 
-    public static void crimeMagUpdate(Edge<String> e) {
-        double[] moreWeight = graph.getEdgeCrimeWeights(e);
-        double currWeight = (double) graph.pathInfo(e);
-        System.out.print(e.get()+ " old weight: " + currWeight + " ");
-        for (double nw : moreWeight) {
-            currWeight += nw;
+    //local wall-clock milliseconds since 1970-01-01T00:00 of a date, 0 if there is none
+    private static long localMillis(Date date) {
+        if (date == null) {
+            return 0;
         }
-        System.out.println(e.get()+ " new weight: " + currWeight);
-        graph.pathInfo(e, currWeight);
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault())
+                            .toEpochSecond(ZoneOffset.UTC) * 1000;
     }
 
-    public static void updateCrime(List<Crime> crimesList) {
-        for (Crime crime : crimesList) {
-            Edge<String> closestEdge = graph.getEdges().get(0);
-            double closestDistance = Double.MAX_VALUE;
-            for (Edge<String> edge : graph.getEdges()) {
-                double lat = (Double.parseDouble(graph.getLat(graph.to(edge))) +
-                            Double.parseDouble(graph.getLat(graph.from(edge))))/2;
-                double lon = (Double.parseDouble(graph.getLon(graph.to(edge))) +
-                            Double.parseDouble(graph.getLon(graph.from(edge))))/2;
-                double distance = Math.sqrt(Math.pow(lat - crime.getLat(), 2) +
-                                            Math.pow(lon - crime.getLon(), 2));
-                if (distance < closestDistance) {
-                    closestDistance = distance;
-                    closestEdge = edge;
-                }
+    /**
+    * Recomputes the weights of roads that got new crimes and publishes them.
+    * @param touched the roads that got crimes, in any order and with repeats,
+    * reordered in place
+    * @param count the number of entries of touched to use
+    */
+    private void reweight(int[] touched, int count) {
+        CompactGraph compact = view.router.getGraph();
+
+        //every road that got a crime once, in edge id order
+        int[] changed = touched;
+        Arrays.sort(changed, 0, count);
+        double[] weights = compact.weights();
+        int changedCount = 0;
+        for (int i = 0; i < count; i++) {
+            int e = changed[i];
+            if (i > 0 && e == changed[i - 1]) {
+                continue;
             }
-            //gets the incident code
-            int codeMag = (crime.getCrimeCode()).charAt(0) - CHAR_INDEX;
-            graph.incrementCrime(closestEdge, codeMag);
-        }
-        for (Edge<String> edge : graph.getEdges()) {
-            if (graph.getCrimeIncidents(edge) != 0) {
 
-                //changes the frequency according to crimes
-                crimeMagUpdate(edge);
+            //changes the frequency according to crimes
+            weights[e] = baseWeights[e] + penalty(e);
+            if (weights[e] != compact.weight(e)) {
+                changed[changedCount++] = e;
             }
         }
+        if (changedCount == 0) {
+            //the weights stay, but new crimes may still have moved the hourly profiles
+            Router r = view.router;
+            if (profile != r.getProfile()) {
+                publish(new Router(compact, r.getHierarchy(), overlay, landmarks, profile), view.pareto);
+            }
+            return;
+        }
+        CompactGraph reweighted = compact.withWeights(weights);
+        changed = Arrays.copyOf(changed, changedCount);
+        overlay = overlay.customize(reweighted, changed);
+        if (landmarks != null) {
+            landmarks = landmarks.update(reweighted, changed);
+        }
+        publish(reweighted);
+        for (WeightListener listener : listeners) {
+            listener.weightsChanged(reweighted, changed);
+        }
     }
+
     /**
      * Main method
      */
     public static void main(String[] args) {
-        if (args.length != 3) {
+        //a saved crime feed replaces the live one when given as --crimes file,
+        //and crimes fade with a half life in days when given as --decay days,
+        //and the route weighs crime by the hour it is walked when given as --depart HH:MM,
+        //and every trade-off between length and crime is listed when given --pareto,
+        //and up to k different routes are listed when given --alternatives k,
+        //and the area reachable within a route weight is listed when given --reach weight
+        boolean listPareto = false;
+        int alternatives = 0;
+        double reach = 0;
+        String crimeFile = null;
+        double halfLifeDays = 0;
+        long departMillis = ANY_TIME;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--crimes") && i + 1 < args.length) {
+                crimeFile = args[++i];
+            } else if (args[i].equals("--decay") && i + 1 < args.length) {
+                try {
+                    halfLifeDays = Double.parseDouble(args[++i]);
+                } catch (NumberFormatException e) {
+                    halfLifeDays = -1;
+                }
+                if (!(halfLifeDays > 0)) {
+                    System.err.println("Half life must be a positive number of days");
+                    return;
+                }
+            } else if (args[i].equals("--pareto")) {
+                listPareto = true;
+            } else if (args[i].equals("--alternatives") && i + 1 < args.length) {
+                try {
+                    alternatives = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    alternatives = 0;
+                }
+                if (alternatives < 1) {
+                    System.err.println("Number of alternatives must be a positive whole number");
+                    return;
+                }
+            } else if (args[i].equals("--reach") && i + 1 < args.length) {
+                try {
+                    reach = Double.parseDouble(args[++i]);
+                } catch (NumberFormatException e) {
+                    reach = -1;
+                }
+                if (!(reach > 0)) {
+                    System.err.println("Reach must be a positive route weight");
+                    return;
+                }
+            } else if (args[i].equals("--depart") && i + 1 < args.length) {
+                try {
+                    departMillis = LocalDate.now().atTime(LocalTime.parse(args[++i]))
+                                            .toEpochSecond(ZoneOffset.UTC) * 1000;
+                } catch (DateTimeParseException e) {
+                    System.err.println("Departure must be a time of day such as 22:30");
+                    return;
+                }
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        args = positional.toArray(new String[0]);
+        //the reachable area needs no end
+        if ((args.length != 3 && args.length != 4) && !(reach > 0 && args.length == 2)) {
             System.err.println("Map Name, Start Coordinates, and End Coordinates must be supplied");
             return;
         }
         String fileName = args[0];
         String startName = args[1];
-        String endName = args[2];
+        String endName = args.length > 2 ? args[2] : null;
+        SearchMode mode = SearchMode.DIJKSTRA;
+        if (args.length == 4) {
+            try {
+                mode = SearchMode.parse(args[3]);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Search mode must be dijkstra, astar, alt, bidirectional, "
+                                   + "bidirectional_astar, hierarchy or overlay");
+                return;
+            }
+        }
+
+        StreetSearch search = new StreetSearch();
 
         // read in street data from data file
         try {
-            loadData(fileName);
+            search.loadData(fileName);
         } catch (FileNotFoundException e) {
             System.err.println("File not found");
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+        if (mode == SearchMode.ALT) {
+            try {
+                search.useLandmarks(fileName + ".alt", LANDMARKS);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+        if (halfLifeDays > 0) {
+            search.useDecay((long) (halfLifeDays * 86400000),
+                            LocalDateTime.now().toEpochSecond(ZoneOffset.UTC) * 1000);
+        }
+        try (InputStream feed = crimeFile != null ? Files.newInputStream(Paths.get(crimeFile))
+                                                  : CrimeAPI.openFeed()) {
+            search.loadCrimes(feed);
+        } catch (IOException e) {
+            System.err.println("Crime feed could not be read: " + e.getMessage());
         }
-        CrimeAPI capi = new CrimeAPI();
-        CrimeCreator creator = new CrimeCreator(capi.getCrimeData());
-        List<Crime> crimesList = creator.getCrimesList();
 
-        updateCrime(crimesList);
+        if (mode == SearchMode.HIERARCHY) {
+            try {
+                search.useHierarchy(fileName + ".ch");
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
 
-        findShortestPath(startName, endName);
+        if (departMillis != ANY_TIME) {
+            search.useProfile(CrimeProfile.HOURS_OF_DAY);
+        }
+        if (reach > 0) {
+            search.findReachable(startName, reach);
+            return;
+        }
+        if (listPareto) {
+            search.findParetoRoutes(startName, endName);
+            return;
+        }
+        if (alternatives > 0) {
+            search.findAlternatives(startName, endName, alternatives);
+            return;
+        }
+        search.findShortestPath(startName, endName, mode, departMillis);
     }
 }
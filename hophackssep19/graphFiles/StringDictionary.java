@@ -0,0 +1,95 @@
+package graphFiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+* Gives every distinct string a small int id, so a column of repeated strings
+* such as crime locations is stored as an int per record plus each word once.
+* Lookups hash the UTF-8 bytes directly, so a parser can look up the bytes it
+* just read and only decode a String the first time a word appears.
+*/
+final class StringDictionary {
+
+    private String[] words = new String[16];
+    private byte[][] bytes = new byte[16][];
+    private int count = 0;
+    // open addressing over the bytes, id + 1 per slot and 0 if free
+    private int[] table = new int[32];
+
+    /**
+    * @return the number of distinct words
+    */
+    int size() {
+        return this.count;
+    }
+
+    /**
+    * @param id a word id
+    * @return the word
+    */
+    String word(int id) {
+        return this.words[id];
+    }
+
+    /**
+    * @param s a word
+    * @return the id of the word, added if it is new
+    */
+    int id(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        return this.id(b, 0, b.length);
+    }
+
+    /**
+    * @param b the buffer holding the UTF-8 bytes of a word
+    * @param start the position of the first byte
+    * @param length the number of bytes
+    * @return the id of the word, added if it is new
+    */
+    int id(byte[] b, int start, int length) {
+        int mask = this.table.length - 1;
+        int slot = hash(b, start, length) & mask;
+        while (this.table[slot] != 0) {
+            byte[] word = this.bytes[this.table[slot] - 1];
+            if (Arrays.equals(word, 0, word.length, b, start, start + length)) {
+                return this.table[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = this.count++;
+        if (id == this.words.length) {
+            this.words = Arrays.copyOf(this.words, id * 2);
+            this.bytes = Arrays.copyOf(this.bytes, id * 2);
+        }
+        this.bytes[id] = Arrays.copyOfRange(b, start, start + length);
+        this.words[id] = new String(this.bytes[id], StandardCharsets.UTF_8);
+        this.table[slot] = id + 1;
+        //keeps the table at most half full
+        if (2 * this.count > this.table.length) {
+            this.rehash();
+        }
+        return id;
+    }
+
+    private static int hash(byte[] b, int start, int length) {
+        int hash = 1;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + b[i];
+        }
+        return hash ^ hash >>> 16;
+    }
+
+    private void rehash() {
+        this.table = new int[this.table.length * 2];
+        int mask = this.table.length - 1;
+        for (int id = 0; id < this.count; id++) {
+            int slot = hash(this.bytes[id], 0, this.bytes[id].length) & mask;
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package graphFiles;
+
+/**
+* Two dimensional k-d tree over the vertices of a CompactGraph, used to snap any
+* longitude/latitude to the closest vertex in logarithmic time.
+* The tree is implicit: the vertices of a range are split at its middle position,
+* with the median vertex stored there, so it needs no node objects.
+*/
+public final class VertexKdTree {
+
+    private static final double EARTH_RADIUS = 6371000.0;
+
+    private final CompactGraph graph;
+    private final int[] ids;
+    private final double[] x;
+    private final double[] y;
+    // meters per degree of longitude and of latitude around the map
+    private final double lonMeters;
+    private final double latMeters;
+
+    /**
+    * Builds the tree over every vertex of the graph.
+    * @param g the graph to index
+    */
+    public VertexKdTree(CompactGraph g) {
+        this.graph = g;
+        int n = g.vertexCount();
+        double latSum = 0;
+        for (int v = 0; v < n; v++) {
+            latSum += g.lat(v);
+        }
+        this.latMeters = Math.toRadians(1) * EARTH_RADIUS;
+        this.lonMeters = this.latMeters * (n == 0 ? 1 : Math.cos(Math.toRadians(latSum / n)));
+
+        this.ids = new int[n];
+        this.x = new double[n];
+        this.y = new double[n];
+        for (int v = 0; v < n; v++) {
+            this.ids[v] = v;
+            this.x[v] = g.lon(v) * this.lonMeters;
+            this.y[v] = g.lat(v) * this.latMeters;
+        }
+        this.build(0, n, 0);
+    }
+
+    //puts the median of the range at its middle, then splits both halves on the other axis
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        this.select(lo, hi - 1, mid, (depth & 1) == 0 ? this.x : this.y);
+        this.build(lo, mid, depth + 1);
+        this.build(mid + 1, hi, depth + 1);
+    }
+
+    //quickselect, leaves the k-th smallest coordinate at k with smaller ones before it
+    private void select(int lo, int hi, int k, double[] axis) {
+        while (lo < hi) {
+            double pivot = axis[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (axis[i] < pivot) {
+                    i++;
+                }
+                while (axis[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    this.swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = this.ids[i];
+        this.ids[i] = this.ids[j];
+        this.ids[j] = id;
+        double t = this.x[i];
+        this.x[i] = this.x[j];
+        this.x[j] = t;
+        t = this.y[i];
+        this.y[i] = this.y[j];
+        this.y[j] = t;
+    }
+
+    /**
+    * Finds the vertex closest to a point.
+    * @param lon the longitude of the point
+    * @param lat the latitude of the point
+    * @return the closest vertex id, or -1 if the graph has no vertices
+    */
+    public int nearest(double lon, double lat) {
+        if (this.ids.length == 0) {
+            return -1;
+        }
+        // {squared distance, position} of the best vertex so far
+        double[] best = {Double.MAX_VALUE, -1};
+        this.nearest(0, this.ids.length, 0, lon * this.lonMeters, lat * this.latMeters, best);
+        return this.ids[(int) best[1]];
+    }
+
+    private void nearest(int lo, int hi, int depth, double qx, double qy, double[] best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double dx = qx - this.x[mid];
+        double dy = qy - this.y[mid];
+        double d = dx * dx + dy * dy;
+        if (d < best[0]) {
+            best[0] = d;
+            best[1] = mid;
+        }
+
+        //searches the side holding the point first, the other only if it can be closer
+        double diff = (depth & 1) == 0 ? dx : dy;
+        if (diff < 0) {
+            this.nearest(lo, mid, depth + 1, qx, qy, best);
+            if (diff * diff < best[0]) {
+                this.nearest(mid + 1, hi, depth + 1, qx, qy, best);
+            }
+        } else {
+            this.nearest(mid + 1, hi, depth + 1, qx, qy, best);
+            if (diff * diff < best[0]) {
+                this.nearest(lo, mid, depth + 1, qx, qy, best);
+            }
+        }
+    }
+
+    /**
+    * Distance from a point to a vertex, on the same projection the tree uses.
+    * @param v the vertex id
+    * @param lon the longitude of the point
+    * @param lat the latitude of the point
+    * @return the distance in meters
+    */
+    public double distance(int v, double lon, double lat) {
+        double dx = (lon - this.graph.lon(v)) * this.lonMeters;
+        double dy = (lat - this.graph.lat(v)) * this.latMeters;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
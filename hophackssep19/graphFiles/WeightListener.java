@@ -0,0 +1,15 @@
+package graphFiles;
+
+/**
+* Told whenever StreetSearch publishes new edge weights, so caches and indexes
+* built on the old weights can update just the edges that changed.
+*/
+public interface WeightListener {
+
+    /**
+    * @param g the graph new queries now route on
+    * @param changedEdges the ids of the edges whose weight changed, in increasing order,
+    *                     shared by every listener and not to be modified
+    */
+    void weightsChanged(CompactGraph g, int[] changedEdges);
+}